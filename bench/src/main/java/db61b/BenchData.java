@@ -0,0 +1,98 @@
+package db61b;
+
+import java.util.Random;
+
+/** Synthetic tables for the benchmarks, shaped like the sample tables
+ *  students.db, enrolled.db, and titanic.db.  Each is produced from a
+ *  fixed seed, so that every run sees the same data, and is governed by
+ *  a number of rows and a cardinality: the number of distinct values in
+ *  each of its non-key columns (where the column's meaning allows that
+ *  many).
+ *  @author andrew */
+class BenchData {
+
+    /** Column titles of students(). */
+    static final String[] STUDENTS = {
+        "SID", "Lastname", "Firstname", "SemEnter", "YearEnter", "Major"
+    };
+
+    /** Column titles of enrolled(). */
+    static final String[] ENROLLED = {"SID", "CCN", "Grade"};
+
+    /** Column titles of titanic(). */
+    static final String[] TITANIC = {
+        "PassengerId", "Survived", "Pclass", "Name", "Sex", "Age", "Fare",
+        "Embarked"
+    };
+
+    /** Grades, as in enrolled.db. */
+    private static final String[] GRADES = {
+        "A+", "A", "A-", "B+", "B", "B-", "C+", "C", "C-", "D", "F"
+    };
+
+    /** Return ROWS rows for a students table, with SIDs 100000 ..
+     *  100000 + ROWS - 1 and about DISTINCT distinct names and
+     *  majors. */
+    static String[][] students(int rows, int distinct) {
+        Random random = new Random(61);
+        String[][] result = new String[rows][];
+        for (int i = 0; i < rows; i += 1) {
+            result[i] = new String[] {
+                Integer.toString(100000 + i),
+                "Last" + random.nextInt(distinct),
+                "First" + random.nextInt(distinct),
+                random.nextBoolean() ? "F" : "S",
+                Integer.toString(2000 + random.nextInt(Math.min(distinct,
+                                                                25))),
+                "Major" + random.nextInt(distinct),
+            };
+        }
+        return result;
+    }
+
+    /** Return ROWS rows for an enrolled table, whose SIDs are those of
+     *  students(STUDENTS, ...) and whose CCNs are about DISTINCT
+     *  distinct course numbers. */
+    static String[][] enrolled(int rows, int students, int distinct) {
+        Random random = new Random(62);
+        String[][] result = new String[rows][];
+        for (int i = 0; i < rows; i += 1) {
+            result[i] = new String[] {
+                Integer.toString(100000 + random.nextInt(students)),
+                Integer.toString(20000 + random.nextInt(distinct)),
+                GRADES[random.nextInt(GRADES.length)],
+            };
+        }
+        return result;
+    }
+
+    /** Return ROWS rows for a titanic table, with about DISTINCT
+     *  distinct ages and fares. */
+    static String[][] titanic(int rows, int distinct) {
+        Random random = new Random(63);
+        String[][] result = new String[rows][];
+        for (int i = 0; i < rows; i += 1) {
+            result[i] = new String[] {
+                Integer.toString(i + 1),
+                Integer.toString(random.nextInt(2)),
+                Integer.toString(1 + random.nextInt(3)),
+                "Passenger, Mr. Number " + i,
+                random.nextBoolean() ? "male" : "female",
+                Integer.toString(random.nextInt(Math.min(distinct, 80))),
+                Double.toString(random.nextInt(distinct) / 4.0),
+                "CQS".substring(i % 3, i % 3 + 1),
+            };
+        }
+        return result;
+    }
+
+    /** Return a table titled TITLES holding ROWS. */
+    static Table table(String[] titles, String[][] rows) {
+        Table table = new Table(titles);
+        for (String[] row : rows) {
+            table.add(row);
+        }
+        table.compact();
+        return table;
+    }
+}
@@ -0,0 +1,216 @@
+package db61b;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/** Generates students.db, enrolled.db, and schedule.db files shaped like
+ *  the sample tables of those names, at a given scale factor, for
+ *  replaying workloads (see Workload) at realistic sizes.  Scale factor
+ *  1 has 10,000 students, each enrolled in about four of 200 courses;
+ *  every count grows in proportion (so scale factor 100 has 1,000,000
+ *  students).  Course popularity, majors, and last names follow a Zipf
+ *  distribution whose exponent is the skew: 0 makes them uniform, and 1
+ *  or more makes a few values account for much of each column.
+ *
+ *  Usage:
+ *      java db61b.Generator [--sf SF] [--skew S] [--seed N] [--dir D]
+ *  which writes the files into directory D (default ".").
+ *  @author andrew */
+class Generator {
+
+    /** Number of students at scale factor 1. */
+    static final int STUDENTS = 10000;
+    /** Number of courses at scale factor 1. */
+    static final int COURSES = 200;
+    /** Average number of courses each student is enrolled in. */
+    static final int ENROLLMENTS = 4;
+
+    /** Departments, from most to least popular. */
+    private static final String[] DEPTS = {
+        "EECS", "Math", "English", "Physics", "Chemistry", "History",
+        "Economics", "Biology", "Statistics", "Music", "Linguistics",
+        "Astronomy",
+    };
+    /** Meeting times. */
+    private static final String[] TIMES = {
+        "8-9MWF", "9-10MWF", "10-11MWF", "11-12MWF", "12-1MWF", "1-2MWF",
+        "2-3MWF", "3-4MWF", "9:30-11TTh", "11-12:30TTh", "2-3:30TTh",
+        "3:30-5TTh",
+    };
+    /** Grades, from most to least common. */
+    private static final String[] GRADES = {
+        "A", "A-", "B+", "B", "A+", "B-", "C+", "C", "C-", "D", "F"
+    };
+
+    /** Write the tables described by the arguments ARGS. */
+    public static void main(String[] args) {
+        double scale = 1;
+        double skew = 0;
+        long seed = 61;
+        String dir = ".";
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                case "--sf":
+                    scale = Double.parseDouble(value);
+                    break;
+                case "--skew":
+                    skew = Double.parseDouble(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--dir":
+                    dir = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: java db61b.Generator [--sf SF]"
+                               + " [--skew S] [--seed N] [--dir D]");
+            System.exit(1);
+        }
+        try {
+            new Generator(scale, skew, seed).write(dir);
+        } catch (IOException e) {
+            System.err.printf("Error: %s%n", e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A generator at scale factor SCALE with Zipf exponent SKEW, whose
+     *  random choices are determined by SEED. */
+    Generator(double scale, double skew, long seed) {
+        _students = Math.max(1, (int) Math.round(STUDENTS * scale));
+        _courses = Math.max(1, (int) Math.round(COURSES * scale));
+        _skew = skew;
+        _random = new Random(seed);
+    }
+
+    /** Write students.db, schedule.db, and enrolled.db into directory
+     *  DIR. */
+    void write(String dir) throws IOException {
+        Zipf majors = new Zipf(DEPTS.length + 28);
+        Zipf lastNames = new Zipf(Math.max(100, _students / 20));
+        CSVWriter output = open(dir, "students");
+        header(output, "SID", "Lastname", "Firstname", "SemEnter",
+               "YearEnter", "Major");
+        for (int i = 0; i < _students; i += 1) {
+            int major = majors.next();
+            row(output, Integer.toString(100000 + i),
+                "Last" + lastNames.next(),
+                "First" + _random.nextInt(2000),
+                _random.nextBoolean() ? "F" : "S",
+                Integer.toString(2000 + _random.nextInt(25)),
+                major < DEPTS.length ? DEPTS[major] : "Major" + major);
+        }
+        close(output, "students", _students);
+
+        Zipf depts = new Zipf(DEPTS.length);
+        output = open(dir, "schedule");
+        header(output, "CCN", "Num", "Dept", "Time", "Room", "Sem",
+               "Year");
+        for (int k = 0; k < _courses; k += 1) {
+            row(output, Integer.toString(20000 + k),
+                Integer.toString(1 + _random.nextInt(199))
+                + (_random.nextBoolean() ? "" : "A"),
+                DEPTS[depts.next()],
+                TIMES[_random.nextInt(TIMES.length)],
+                (1 + _random.nextInt(400)) + " Hall" + _random.nextInt(30),
+                _random.nextBoolean() ? "F" : "S",
+                Integer.toString(2000 + _random.nextInt(25)));
+        }
+        close(output, "schedule", _courses);
+
+        Zipf courses = new Zipf(_courses);
+        Zipf grades = new Zipf(GRADES.length);
+        output = open(dir, "enrolled");
+        header(output, "SID", "CCN", "Grade");
+        int rows = ENROLLMENTS * _students;
+        for (int i = 0; i < rows; i += 1) {
+            row(output, Integer.toString(100000 + _random.nextInt(_students)),
+                Integer.toString(20000 + courses.next()),
+                GRADES[grades.next()]);
+        }
+        close(output, "enrolled", rows);
+    }
+
+    /** Return a writer for table NAME in directory DIR. */
+    private CSVWriter open(String dir, String name) throws IOException {
+        return new CSVWriter(new OutputStreamWriter(
+            new FileOutputStream(new File(dir, name + ".db")),
+            StandardCharsets.UTF_8));
+    }
+
+    /** Finish writing OUTPUT, which holds table NAME of ROWS rows. */
+    private void close(CSVWriter output, String name, int rows)
+        throws IOException {
+        output.close();
+        System.out.printf("Wrote %s.db (%d rows)%n", name, rows);
+    }
+
+    /** Write the column TITLES to OUTPUT. */
+    private static void header(CSVWriter output, String... titles)
+        throws IOException {
+        row(output, titles);
+    }
+
+    /** Write a row of VALUES to OUTPUT. */
+    private static void row(CSVWriter output, String... values)
+        throws IOException {
+        for (String value : values) {
+            output.write(value);
+        }
+        output.endRecord();
+    }
+
+    /** Chooses among N values, numbered 0 to N - 1, with probability
+     *  proportional to 1 / (k + 1)**_skew for value k. */
+    private class Zipf {
+
+        /** A chooser among N values. */
+        Zipf(int n) {
+            _cumulative = new double[n];
+            double total = 0;
+            for (int k = 0; k < n; k += 1) {
+                total += Math.pow(k + 1, -_skew);
+                _cumulative[k] = total;
+            }
+        }
+
+        /** Return a randomly chosen value. */
+        int next() {
+            double x = _random.nextDouble() * _cumulative[_cumulative.length
+                                                          - 1];
+            int lo = 0, hi = _cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (_cumulative[mid] <= x) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** _cumulative[k] is the total weight of values 0 .. k. */
+        private final double[] _cumulative;
+    }
+
+    /** Number of students. */
+    private final int _students;
+    /** Number of courses. */
+    private final int _courses;
+    /** Zipf exponent of skewed columns. */
+    private final double _skew;
+    /** Source of random choices. */
+    private final Random _random;
+}
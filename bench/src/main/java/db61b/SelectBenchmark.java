@@ -0,0 +1,132 @@
+package db61b;
+
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of select clauses, parsed and executed by a
+ *  CommandInterpreter: selects from a students table with 0, 1, or 3
+ *  conditions, and joins of students with an enrolled table four times
+ *  its size, with 0, 1, or 3 conditions (see BenchData).  Each
+ *  benchmark call parses and executes one select clause, read from an
+ *  input that repeats the statement endlessly.
+ *  @author andrew */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SelectBenchmark {
+
+    /** Single-table selects with 0, 1, and 3 conditions. */
+    private static final String[] SELECTS = {
+        "select SID, Lastname from students;",
+        "select SID, Lastname from students where Major = 'Major3';",
+        "select SID, Lastname from students where Major = 'Major3'"
+        + " and YearEnter > '2004' and Lastname < 'Last5';",
+    };
+
+    /** Two-table joins with 0, 1, and 3 conditions. */
+    private static final String[] JOINS = {
+        "select Lastname, CCN, Grade from students, enrolled;",
+        "select Lastname, CCN, Grade from students, enrolled"
+        + " where Grade = 'A';",
+        "select Lastname, CCN, Grade from students, enrolled"
+        + " where Grade = 'A' and Major < 'Major5' and CCN > '20001';",
+    };
+
+    /** Number of rows in the students table. */
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    /** Number of distinct values in the tables' non-key columns. */
+    @Param({"10", "10000"})
+    public int distinct;
+
+    /** Number of conditions in each select. */
+    @Param({"0", "1", "3"})
+    public int conditions;
+
+    /** Generate the tables, and make interpreters that read each kind of
+     *  select repeatedly. */
+    @Setup(Level.Trial)
+    public void setup() {
+        Database database = new Database();
+        database.put("students",
+                     BenchData.table(BenchData.STUDENTS,
+                                     BenchData.students(rows, distinct)));
+        database.put("enrolled",
+                     BenchData.table(BenchData.ENROLLED,
+                                     BenchData.enrolled(4 * rows, rows,
+                                                        distinct)));
+        _select = interpreter(database, SELECTS[Math.min(conditions, 2)]);
+        _join = interpreter(database, JOINS[Math.min(conditions, 2)]);
+    }
+
+    /** Select from one table. */
+    @Benchmark
+    public Table select() {
+        return next(_select);
+    }
+
+    /** Join two tables. */
+    @Benchmark
+    public Table join() {
+        return next(_join);
+    }
+
+    /** Return the result of the next select clause read by
+     *  INTERPRETER, first discarding the tokens of the previous one, as
+     *  statement() would. */
+    private static Table next(CommandInterpreter interpreter) {
+        interpreter.flushInput();
+        Table result = interpreter.selectClause();
+        interpreter.skipCommand();
+        return result;
+    }
+
+    /** Return an interpreter on DATABASE whose input is STATEMENT,
+     *  repeated forever. */
+    private static CommandInterpreter interpreter(Database database,
+                                                  String statement) {
+        String text = statement + "\n";
+        Readable input = new Readable() {
+            @Override
+            public int read(CharBuffer buffer) {
+                int n = 0;
+                while (buffer.hasRemaining()) {
+                    buffer.put(text.charAt(_pos));
+                    _pos = (_pos + 1) % text.length();
+                    n += 1;
+                }
+                return n;
+            }
+
+            /** Position in text of the next character to read. */
+            private int _pos;
+        };
+        return new CommandInterpreter(new Scanner(input), null,
+                                      OutputStream.nullOutputStream(),
+                                      database);
+    }
+
+    /** Interpreter reading the single-table select. */
+    private CommandInterpreter _select;
+    /** Interpreter reading the join. */
+    private CommandInterpreter _join;
+}
@@ -0,0 +1,119 @@
+package db61b;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of loading, inserting into, printing, and storing a
+ *  table (see BenchData), by number of rows and cardinality, for two
+ *  shapes of table: students, whose rows are narrow and need no quoting,
+ *  and titanic, whose rows are wider and whose names contain commas, so
+ *  that every row has a quoted field.
+ *  @author andrew */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class TableBenchmark {
+
+    /** Number of rows in the table. */
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    /** Number of distinct values in its non-key columns. */
+    @Param({"10", "10000"})
+    public int distinct;
+
+    /** Shape of the table: "students" or "titanic". */
+    @Param({"students", "titanic"})
+    public String shape;
+
+    /** Generate the table, and store it in a scratch directory for
+     *  readTable. */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if (shape.equals("titanic")) {
+            _titles = BenchData.TITANIC;
+            _rows = BenchData.titanic(rows, distinct);
+        } else {
+            _titles = BenchData.STUDENTS;
+            _rows = BenchData.students(rows, distinct);
+        }
+        _table = BenchData.table(_titles, _rows);
+        _dir = Files.createTempDirectory("db61b-bench").toFile();
+        _table.writeTable(path("loaded"));
+    }
+
+    /** Remove the scratch directory. */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : _dir.listFiles()) {
+            file.delete();
+        }
+        _dir.delete();
+    }
+
+    /** Read the stored table back. */
+    @Benchmark
+    public Table readTable() {
+        return Table.readTable(path("loaded"));
+    }
+
+    /** Build the table a row at a time. */
+    @Benchmark
+    public Table add() {
+        Table table = new Table(_titles);
+        for (String[] row : _rows) {
+            table.add(row);
+        }
+        return table;
+    }
+
+    /** Print the table, discarding the output. */
+    @Benchmark
+    public void print() {
+        PrintWriter output = new PrintWriter(Writer.nullWriter());
+        _table.print(output);
+        output.flush();
+    }
+
+    /** Store the table as text. */
+    @Benchmark
+    public void writeTable() {
+        _table.writeTable(path("stored"));
+    }
+
+    /** Return the name, for readTable and writeTable, of table NAME in
+     *  the scratch directory. */
+    private String path(String name) {
+        return new File(_dir, name).getPath();
+    }
+
+    /** The column titles of the table. */
+    private String[] _titles;
+    /** The rows of the table. */
+    private String[][] _rows;
+    /** The table. */
+    private Table _table;
+    /** Scratch directory. */
+    private File _dir;
+}
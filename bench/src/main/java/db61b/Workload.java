@@ -0,0 +1,263 @@
+package db61b;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/** Replays scripts of db61b statements (such as testing/test5.in), each
+ *  statement through its own CommandInterpreter on a shared Database,
+ *  and reports the latency percentiles of each statement and the
+ *  overall throughput.  Each script is run a number of times to warm
+ *  up, and then a number of times more that are measured, each run
+ *  starting from an empty database.  Statements that fail are counted
+ *  as errors, and do not stop their script; a quit or exit statement
+ *  does.  Load statements read tables from the current directory, as
+ *  written there by Generator, for example.
+ *
+ *  Usage:
+ *      java db61b.Workload [--warmup N] [--repeat N] [--output FILE]
+ *                          SCRIPT ...
+ *  Results of statements go to FILE, if given, and are otherwise
+ *  discarded.
+ *  @author andrew */
+class Workload {
+
+    /** Replay the scripts given by the arguments ARGS. */
+    public static void main(String[] args) {
+        int warmup = 1, repeat = 10;
+        String output = null;
+        ArrayList<String> scripts = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i += 1) {
+                switch (args[i]) {
+                case "--warmup":
+                    i += 1;
+                    warmup = Integer.parseInt(args[i]);
+                    break;
+                case "--repeat":
+                    i += 1;
+                    repeat = Integer.parseInt(args[i]);
+                    break;
+                case "--output":
+                    i += 1;
+                    output = args[i];
+                    break;
+                default:
+                    scripts.add(args[i]);
+                }
+            }
+            if (scripts.isEmpty() || repeat < 1) {
+                throw new IllegalArgumentException();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: java db61b.Workload [--warmup N]"
+                               + " [--repeat N] [--output FILE] SCRIPT ...");
+            System.exit(1);
+        }
+
+        try (OutputStream results = output == null
+             ? OutputStream.nullOutputStream()
+             : new FileOutputStream(output)) {
+            Workload workload = new Workload(results);
+            for (String script : scripts) {
+                workload.add(script);
+            }
+            workload.run(warmup, false);
+            workload.run(repeat, true);
+            workload.report(System.out);
+        } catch (IOException e) {
+            System.err.printf("Error: %s%n", e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A workload whose statements write their results on RESULTS. */
+    Workload(OutputStream results) {
+        _results = results;
+    }
+
+    /** Add the statements in the file SCRIPT to my scripts. */
+    void add(String script) throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(script)),
+                                 StandardCharsets.UTF_8);
+        ArrayList<Statement> statements = new ArrayList<>();
+        for (String statement : split(text)) {
+            statements.add(new Statement(script, statements.size() + 1,
+                                         statement));
+        }
+        _scripts.add(statements);
+    }
+
+    /** Run each of my scripts TIMES times, recording the latency of each
+     *  statement if MEASURE. */
+    void run(int times, boolean measure) {
+        long start = System.nanoTime();
+        for (ArrayList<Statement> script : _scripts) {
+            for (int n = 0; n < times; n += 1) {
+                Database database = new Database();
+                for (Statement statement : script) {
+                    if (!statement.execute(database, measure)) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (measure) {
+            _elapsed += System.nanoTime() - start;
+        }
+    }
+
+    /** Print a report of my measurements on OUT. */
+    void report(PrintStream out) {
+        out.printf("%-48s %6s %9s %9s %9s %9s %9s%n", "statement (ms)",
+                   "n", "mean", "p50", "p90", "p99", "max");
+        int count = 0, errors = 0;
+        for (ArrayList<Statement> script : _scripts) {
+            for (Statement statement : script) {
+                long[] times = statement.times();
+                count += times.length;
+                errors += statement._errors;
+                if (times.length == 0) {
+                    continue;
+                }
+                long total = 0;
+                for (long time : times) {
+                    total += time;
+                }
+                out.printf("%-48s %6d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                           statement.label(), times.length,
+                           millis(total) / times.length,
+                           millis(percentile(times, 50)),
+                           millis(percentile(times, 90)),
+                           millis(percentile(times, 99)),
+                           millis(times[times.length - 1]));
+            }
+        }
+        double seconds = _elapsed / 1e9;
+        out.printf("%d statements in %.3f s: %.1f statements/s, "
+                   + "%d errors%n", count, seconds, count / seconds, errors);
+    }
+
+    /** Return the statements in TEXT, each ending with its semicolon,
+     *  skipping comments and allowing for semicolons in literals. */
+    static ArrayList<String> split(String text) {
+        ArrayList<String> result = new ArrayList<>();
+        StringBuilder statement = new StringBuilder();
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (c == '/' && text.startsWith("/*", i)) {
+                int end = text.indexOf("*/", i + 2);
+                i = end == -1 ? text.length() : end + 1;
+                statement.append(' ');
+                continue;
+            }
+            statement.append(c);
+            if (c == '\'') {
+                int end = text.indexOf('\'', i + 1);
+                end = end == -1 ? text.length() - 1 : end;
+                statement.append(text, i + 1, end + 1);
+                i = end;
+            } else if (c == ';') {
+                result.add(statement.toString().trim());
+                statement.setLength(0);
+            }
+        }
+        if (!statement.toString().trim().isEmpty()) {
+            result.add(statement.toString().trim());
+        }
+        return result;
+    }
+
+    /** Return the P-th percentile of the sorted array TIMES, by the
+     *  nearest-rank method. */
+    static long percentile(long[] times, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * times.length);
+        return times[Math.max(rank, 1) - 1];
+    }
+
+    /** Return NANOS nanoseconds in milliseconds. */
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /** One statement of a script, with its measurements. */
+    private class Statement {
+
+        /** Statement number NUMBER of file SCRIPT, whose text is
+         *  TEXT. */
+        Statement(String script, int number, String text) {
+            _script = Paths.get(script).getFileName().toString();
+            _number = number;
+            _text = text;
+        }
+
+        /** Execute me on DATABASE, recording my latency if MEASURE.
+         *  Return false iff I am a quit or exit statement. */
+        boolean execute(Database database, boolean measure) {
+            CommandInterpreter interpreter =
+                new CommandInterpreter(new Scanner(_text), null, _results,
+                                       database);
+            long start = System.nanoTime();
+            boolean more = true;
+            try {
+                more = interpreter.statement();
+            } catch (DBException e) {
+                if (measure) {
+                    _errors += 1;
+                }
+            }
+            long time = System.nanoTime() - start;
+            if (measure) {
+                if (_count == _times.length) {
+                    _times = Arrays.copyOf(_times, 2 * _count);
+                }
+                _times[_count] = time;
+                _count += 1;
+            }
+            return more;
+        }
+
+        /** Return my recorded latencies, in nanoseconds, sorted. */
+        long[] times() {
+            long[] result = Arrays.copyOf(_times, _count);
+            Arrays.sort(result);
+            return result;
+        }
+
+        /** Return a one-line description of me. */
+        String label() {
+            String label = _script + ":" + _number + " "
+                + _text.replaceAll("\\s+", " ");
+            return label.length() <= 48 ? label
+                : label.substring(0, 45) + "...";
+        }
+
+        /** Name of my script file. */
+        private final String _script;
+        /** My position in my script, from 1. */
+        private final int _number;
+        /** My text. */
+        private final String _text;
+        /** My latencies, in nanoseconds (the first _count of them). */
+        private long[] _times = new long[16];
+        /** Number of latencies recorded. */
+        private int _count;
+        /** Number of measured executions that failed. */
+        private int _errors;
+    }
+
+    /** Where statements write their results. */
+    private final OutputStream _results;
+    /** The statements of each script. */
+    private final ArrayList<ArrayList<Statement>> _scripts =
+        new ArrayList<>();
+    /** Total time of the measured runs, in nanoseconds. */
+    private long _elapsed;
+}
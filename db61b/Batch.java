@@ -0,0 +1,100 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** A batch of up to SIZE row numbers of one table, on which select works
+ *  a batch at a time instead of a row at a time.  Each Condition
+ *  removes the rows it rejects from the batch (Condition.filter), which
+ *  leaves the numbers of the surviving rows, in order, as a selection
+ *  vector; the values of the columns to be selected are then fetched
+ *  for all of those rows together (project).  Each step is a short,
+ *  simple loop over arrays that the JIT compiler handles well, and the
+ *  ValueLists involved are consulted once per batch rather than once
+ *  per row and column.  The arrays a batch needs along the way are
+ *  allocated with it and reused from batch to batch, so that a Batch
+ *  must be used by only one thread at a time.
+ *  @author andrew */
+class Batch {
+
+    /** The maximum number of rows in a batch. */
+    static final int SIZE = 1024;
+
+    /** Return the number of rows now in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of my Ith row (0 <= I < size()). */
+    int row(int i) {
+        return _rows[i];
+    }
+
+    /** Make me hold rows START .. END - 1, where END - START <= SIZE. */
+    void fill(int start, int end) {
+        _size = end - start;
+        for (int i = 0; i < _size; i += 1) {
+            _rows[i] = start + i;
+        }
+    }
+
+    /** Make me hold rows ROWS[START] .. ROWS[END - 1], where END - START
+     *  <= SIZE. */
+    void fill(int[] rows, int start, int end) {
+        _size = end - start;
+        System.arraycopy(rows, start, _rows, 0, _size);
+    }
+
+    /** Remove from me the rows that do not satisfy all of CONDITIONS,
+     *  which must be bound to the table my rows come from. */
+    void filter(List<Condition> conditions) {
+        for (int i = 0; i < conditions.size() && _size > 0; i += 1) {
+            _size = conditions.get(i).filter(this);
+        }
+    }
+
+    /** Pass to RESULT, for each of my rows of TABLE in order, a new
+     *  array of its values in the columns numbered COLUMNS. */
+    void project(Table table, int[] columns, Consumer<String[]> result) {
+        if (_columnValues == null || _columnValues.length < columns.length) {
+            _columnValues = new String[columns.length][SIZE];
+        }
+        for (int k = 0; k < columns.length; k += 1) {
+            table.column(columns[k]).values(_rows, _size, _columnValues[k]);
+        }
+        for (int i = 0; i < _size; i += 1) {
+            String[] row = new String[columns.length];
+            for (int k = 0; k < columns.length; k += 1) {
+                row[k] = _columnValues[k][i];
+            }
+            result.accept(row);
+        }
+    }
+
+    /** Append my rows to ROWS. */
+    void addTo(ArrayList<Integer> rows) {
+        for (int i = 0; i < _size; i += 1) {
+            rows.add(_rows[i]);
+        }
+    }
+
+    /** The numbers of my rows (the first _size of them).  This and the
+     *  following fields are also used directly by Condition.filter,
+     *  which keeps _rows and _size up to date and uses the rest as
+     *  scratch space. */
+    final int[] _rows = new int[SIZE];
+    /** The number of my rows. */
+    int _size;
+    /** Scratch space for the codes of my rows' values. */
+    final int[] _codes = new int[SIZE];
+    /** Scratch space for the numeric values of my rows' values. */
+    final long[] _longs1 = new long[SIZE], _longs2 = new long[SIZE];
+    /** Scratch space for the numeric values of my rows' values. */
+    final double[] _doubles1 = new double[SIZE],
+        _doubles2 = new double[SIZE];
+
+    /** Scratch space for project: the values of each column it
+     *  selects, by row. */
+    private String[][] _columnValues;
+}
@@ -0,0 +1,78 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class BatchTest {
+
+    /** A table of 3000 rows whose columns hold, respectively, a few
+     *  strings, a few numbers, many numbers, and decimals. */
+    private static Table sample() {
+        Table table = new Table(new String[] {"s", "few", "many", "x"});
+        String[] words = {"ant", " bee", "cat ", "dog"};
+        for (int i = 0; i < 3000; i += 1) {
+            table.add(new String[] {words[i % 4], Integer.toString(i % 7),
+                                    Integer.toString(i * 7919 % 3001),
+                                    (i % 50) + ".25"});
+        }
+        table.compact();
+        return table;
+    }
+
+    /** Check that filtering the rows of TABLE in batches by CONDITIONS
+     *  keeps exactly the rows that pass Condition.test. */
+    private static void check(Table table, Condition... conditions) {
+        List<Condition> bound = new ArrayList<>();
+        for (Condition cond : conditions) {
+            bound.add(cond.bind(table));
+        }
+        ArrayList<Integer> expected = new ArrayList<>();
+        for (int row = 0; row < table.size(); row += 1) {
+            if (Condition.test(bound, row)) {
+                expected.add(row);
+            }
+        }
+        ArrayList<Integer> found = new ArrayList<>();
+        Batch batch = new Batch();
+        for (int start = 0; start < table.size(); start += Batch.SIZE) {
+            batch.fill(start, Math.min(start + Batch.SIZE, table.size()));
+            batch.filter(bound);
+            batch.addTo(found);
+        }
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void testFilter() {
+        Table table = sample();
+        Column s = new Column("s", table), few = new Column("few", table),
+            many = new Column("many", table), x = new Column("x", table);
+        check(table, new Condition(s, "=", "bee"));
+        check(table, new Condition(s, ">", "b"),
+              new Condition(few, "<=", "3"));
+        check(table, new Condition(many, ">=", "1500"));
+        check(table, new Condition(many, "<", few),
+              new Condition(x, "!=", "3.25"));
+        check(table, new Condition(x, "<", "10"),
+              new Condition(many, "<", "2.5E3"));
+        check(table, new Condition(many, "=", "-1"));
+    }
+
+    @Test
+    public void testProject() {
+        Table table = sample();
+        Table result = new Table(new String[] {"x", "s"});
+        Batch batch = new Batch();
+        batch.fill(new int[] {5, 1, 2, 3, 4}, 1, 4);
+        batch.project(table, new int[] {3, 0}, result::add);
+        assertEquals(3, result.size());
+        assertEquals(Arrays.asList(" bee", "cat ", "dog"),
+                     Arrays.asList(result.get(0, 1), result.get(1, 1),
+                                   result.get(2, 1)));
+        assertEquals("3.25", result.get(2, 0));
+    }
+}
@@ -0,0 +1,174 @@
+package db61b;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import static db61b.Utils.*;
+
+/** Reads records of comma-separated values, as described in RFC 4180,
+ *  from a character stream.  A field may be enclosed in double quotes,
+ *  in which case it may contain commas, line breaks, and (doubled)
+ *  double quotes.  Records are separated by LF or CRLF; empty lines
+ *  are skipped.
+ *
+ *  The reader makes a single pass over a large character buffer that
+ *  it refills from its source as needed.  An unquoted field that lies
+ *  within the buffer is extracted with a single String constructor
+ *  call, and the array of fields returned by next is reused from one
+ *  record to the next whenever their widths agree.
+ *  @author andrew */
+class CSVReader {
+
+    /** Size of my character buffer. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A reader of records from INPUT. */
+    CSVReader(Reader input) {
+        _input = input;
+        _buf = new char[BUFFER_SIZE];
+        _field = new StringBuilder();
+        _fields = new ArrayList<>();
+    }
+
+    /** Return the exception reporting that a record of the file NAME.db
+     *  has a different number of fields from its header, as reported by
+     *  every reader of .db files. */
+    static DBException wrongFieldCount(String name) {
+        return error("wrong number of fields in %s.db", name);
+    }
+
+    /** Return the fields of the next record, or null if there are no
+     *  more records.  The array returned may be overwritten by the
+     *  next call, so callers that keep it must copy it.  Malformed
+     *  quoted fields cause a DBException. */
+    String[] next() throws IOException {
+        int c = peekChar();
+        while (c == '\n' || c == '\r') {
+            _pos += 1;
+            c = peekChar();
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        _fields.clear();
+        while (true) {
+            _fields.add(c == '"' ? quoted() : unquoted());
+            c = peekChar();
+            if (c != ',') {
+                break;
+            }
+            _pos += 1;
+            c = peekChar();
+        }
+
+        if (_row == null || _row.length != _fields.size()) {
+            _row = new String[_fields.size()];
+        }
+        return _fields.toArray(_row);
+    }
+
+    /** Close my source. */
+    void close() throws IOException {
+        _input.close();
+    }
+
+    /** Return the next character of input without consuming it, or -1
+     *  at the end of input. */
+    private int peekChar() throws IOException {
+        if (_pos == _limit && !fill()) {
+            return -1;
+        }
+        return _buf[_pos];
+    }
+
+    /** Refill my buffer, which must be exhausted, from my source.
+     *  Return false if there is nothing more to read. */
+    private boolean fill() throws IOException {
+        int n = _input.read(_buf, 0, _buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        _pos = 0;
+        _limit = n;
+        return true;
+    }
+
+    /** Consume and return an unquoted field, which ends at a comma, a
+     *  line break, or the end of input. */
+    private String unquoted() throws IOException {
+        _field.setLength(0);
+        int start = _pos;
+        while (true) {
+            while (_pos < _limit) {
+                char c = _buf[_pos];
+                if (c == ',' || c == '\n' || c == '\r') {
+                    return finishField(start);
+                }
+                _pos += 1;
+            }
+            _field.append(_buf, start, _pos - start);
+            if (!fill()) {
+                return finishField(_pos);
+            }
+            start = 0;
+        }
+    }
+
+    /** Consume and return a quoted field, whose opening quote is the
+     *  next character of input, without its quotes. */
+    private String quoted() throws IOException {
+        _field.setLength(0);
+        _pos += 1;
+        while (true) {
+            int start = _pos;
+            while (_pos < _limit && _buf[_pos] != '"') {
+                _pos += 1;
+            }
+            _field.append(_buf, start, _pos - start);
+            if (_pos == _limit) {
+                if (!fill()) {
+                    throw error("unterminated quoted field");
+                }
+                continue;
+            }
+            _pos += 1;
+            if (peekChar() != '"') {
+                break;
+            }
+            _field.append('"');
+            _pos += 1;
+        }
+        int c = peekChar();
+        if (c != ',' && c != '\n' && c != '\r' && c != -1) {
+            throw error("characters after closing quote");
+        }
+        return _field.toString();
+    }
+
+    /** Return the unquoted field consisting of _field followed by the
+     *  characters from START to _pos of my buffer. */
+    private String finishField(int start) {
+        if (_field.length() == 0) {
+            return new String(_buf, start, _pos - start);
+        }
+        _field.append(_buf, start, _pos - start);
+        return _field.toString();
+    }
+
+    /** Source of characters. */
+    private final Reader _input;
+    /** Buffered input.  _buf[_pos .. _limit-1] is yet to be read. */
+    private final char[] _buf;
+    /** Position of next unread character in _buf. */
+    private int _pos;
+    /** End of valid characters in _buf. */
+    private int _limit;
+    /** Accumulates fields that span buffer refills or contain quotes. */
+    private final StringBuilder _field;
+    /** Fields of the record being read. */
+    private final ArrayList<String> _fields;
+    /** The array most recently returned by next. */
+    private String[] _row;
+}
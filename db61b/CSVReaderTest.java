@@ -0,0 +1,55 @@
+package db61b;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CSVReaderTest {
+
+    @Test
+    public void testPlain() throws IOException {
+        CSVReader input = new CSVReader(new StringReader("a,b,c\n1,,3\r\n"
+                                                         + "\n4,5,6"));
+        assertArrayEquals(new String[] {"a", "b", "c"}, input.next());
+        assertArrayEquals(new String[] {"1", "", "3"}, input.next());
+        assertArrayEquals(new String[] {"4", "5", "6"}, input.next());
+        assertNull(input.next());
+    }
+
+    @Test
+    public void testQuoted() throws IOException {
+        CSVReader input = new CSVReader(
+            new StringReader("1,\"Braund, Mr. Owen Harris\",male\n"
+                             + "\"say \"\"hi\"\"\",\"two\nlines\",\"\"\n"));
+        assertArrayEquals(new String[] {"1", "Braund, Mr. Owen Harris",
+                                        "male"}, input.next());
+        assertArrayEquals(new String[] {"say \"hi\"", "two\nlines", ""},
+                          input.next());
+        assertNull(input.next());
+    }
+
+    @Test
+    public void testLongFields() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2 * CSVReader.BUFFER_SIZE; i += 1) {
+            text.append((char) ('a' + i % 26));
+        }
+        String field = text.toString();
+        CSVReader input = new CSVReader(
+            new StringReader(field + ",\"" + field + "\"\n"));
+        String[] row = input.next();
+        assertEquals(2, row.length);
+        assertEquals(field, row[0]);
+        assertEquals(field, row[1]);
+        assertNull(input.next());
+    }
+
+    @Test(expected = DBException.class)
+    public void testUnterminated() throws IOException {
+        new CSVReader(new StringReader("a,\"b\n")).next();
+    }
+}
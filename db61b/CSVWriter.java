@@ -0,0 +1,116 @@
+package db61b;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** Writes records of comma-separated values, in the form CSVReader
+ *  reads, to a character stream.  A field that contains a comma, a
+ *  double quote, or a line break is enclosed in double quotes, with its
+ *  double quotes doubled.  Records end with LF.  A record consisting of
+ *  one empty field is written as "", since CSVReader skips empty lines.
+ *
+ *  Fields are copied into a large character buffer that is reused from
+ *  one record to the next and handed to the stream only when full, so
+ *  that writing a field allocates nothing.
+ *  @author andrew */
+class CSVWriter {
+
+    /** Size of my character buffer. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** A writer of records to OUTPUT. */
+    CSVWriter(Writer output) {
+        _output = output;
+        _buf = new char[BUFFER_SIZE];
+    }
+
+    /** Write FIELD as the next field of the current record. */
+    void write(String field) throws IOException {
+        if (_fields > 0) {
+            put(',');
+        }
+        _fields += 1;
+        _empty = field.isEmpty();
+        if (needsQuotes(field)) {
+            put('"');
+            for (int i = 0; i < field.length(); i += 1) {
+                char c = field.charAt(i);
+                if (c == '"') {
+                    put('"');
+                }
+                put(c);
+            }
+            put('"');
+        } else {
+            int n = field.length();
+            for (int start = 0; start < n; ) {
+                if (_pos == _buf.length) {
+                    drain();
+                }
+                int k = Math.min(n - start, _buf.length - _pos);
+                field.getChars(start, start + k, _buf, _pos);
+                _pos += k;
+                start += k;
+            }
+        }
+    }
+
+    /** End the current record. */
+    void endRecord() throws IOException {
+        if (_fields == 1 && _empty) {
+            put('"');
+            put('"');
+        }
+        put('\n');
+        _fields = 0;
+    }
+
+    /** Write out everything in my buffer and flush my stream. */
+    void flush() throws IOException {
+        drain();
+        _output.flush();
+    }
+
+    /** Flush, and then close my stream. */
+    void close() throws IOException {
+        flush();
+        _output.close();
+    }
+
+    /** Return true iff FIELD must be quoted. */
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i += 1) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Append C to my buffer. */
+    private void put(char c) throws IOException {
+        if (_pos == _buf.length) {
+            drain();
+        }
+        _buf[_pos] = c;
+        _pos += 1;
+    }
+
+    /** Hand the contents of my buffer to my stream and empty it. */
+    private void drain() throws IOException {
+        _output.write(_buf, 0, _pos);
+        _pos = 0;
+    }
+
+    /** Destination of characters. */
+    private final Writer _output;
+    /** Buffered output.  _buf[0 .. _pos-1] is yet to be written. */
+    private final char[] _buf;
+    /** Position of next free character in _buf. */
+    private int _pos;
+    /** Number of fields written in the current record. */
+    private int _fields;
+    /** True iff the last field written was empty. */
+    private boolean _empty;
+}
@@ -0,0 +1,75 @@
+package db61b;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class CSVWriterTest {
+
+    /** Return the text CSVWriter writes for RECORDS. */
+    private static String write(String[]... records) throws IOException {
+        StringWriter text = new StringWriter();
+        CSVWriter output = new CSVWriter(text);
+        for (String[] record : records) {
+            for (String field : record) {
+                output.write(field);
+            }
+            output.endRecord();
+        }
+        output.close();
+        return text.toString();
+    }
+
+    @Test
+    public void testQuoting() throws IOException {
+        assertEquals("a,b,c\n1,,3\n", write(new String[] {"a", "b", "c"},
+                                            new String[] {"1", "", "3"}));
+        assertEquals("\"x, y\",\"say \"\"hi\"\"\",\"two\nlines\"\n\"\"\n",
+                     write(new String[] {"x, y", "say \"hi\"", "two\nlines"},
+                           new String[] {""}));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < CSVWriter.BUFFER_SIZE / 10; i += 1) {
+            big.append("\"field\",");
+        }
+        String[][] records = {
+            {"", "", ""}, {"\r\n", "a\"", " b "}, {big.toString(), "c", ""},
+            {"big", big.toString().replace("\"", ""), "d"},
+        };
+        CSVReader input = new CSVReader(new StringReader(write(records)));
+        for (String[] record : records) {
+            assertArrayEquals(record, input.next());
+        }
+        assertNull(input.next());
+    }
+
+    @Test
+    public void testWriteTable() throws IOException {
+        Table table = new Table(new String[] {"name", "note"});
+        table.add(new String[] {"Smith", "says \"hi\""});
+        table.add(new String[] {"Braund, Owen", "x"});
+        table.add(new String[] {"Allen", ""});
+        table.writeTable("written");
+        assertFalse(new File("written.db.tmp").exists());
+        assertEquals("name,note\nAllen,\n\"Braund, Owen\",x\n"
+                     + "Smith,\"says \"\"hi\"\"\"\n",
+                     new String(Files.readAllBytes(Paths.get("written.db")),
+                                "UTF-8"));
+        Table copy = Table.readTable("written");
+        assertEquals(3, copy.size());
+        assertEquals("says \"hi\"", copy.get(2, 1));
+        new File("written.db").delete();
+    }
+}
@@ -0,0 +1,203 @@
+package db61b;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** A secondary index on one column of a Table, as made by a "create
+ *  index" statement, which lets a select find the rows satisfying a
+ *  condition that compares that column with a literal without testing
+ *  every row of the table.  It has two parts.  A hash table maps each
+ *  (trimmed) value in the column to the rows that hold it, and answers
+ *  '=' in expected constant time; Table.add keeps it up to date.  A
+ *  sorted array of row numbers, ordered by value as conditions compare
+ *  them (as numbers if the column is numeric, and otherwise as trimmed
+ *  strings), answers any relation by binary search in O(lg N) time.
+ *  Like Table.index(), the sorted array is brought up to date lazily,
+ *  when next used after rows have been added.
+ *  @author andrew */
+class ColumnIndex {
+
+    /** An index on column number COL of TABLE. */
+    ColumnIndex(Table table, int col) {
+        _table = table;
+        _col = col;
+        for (int row = 0; row < table.size(); row += 1) {
+            add(row);
+        }
+    }
+
+    /** Return the number of the column I index. */
+    int column() {
+        return _col;
+    }
+
+    /** Enter row number ROW, just added to my table, into my hash
+     *  table. */
+    void add(int row) {
+        String key = _table.get(row, _col).trim();
+        Rows rows = _hash.get(key);
+        if (rows == null) {
+            rows = new Rows();
+            _hash.put(key, rows);
+        }
+        rows.add(row);
+    }
+
+    /** Return the numbers, in increasing order, of the rows that satisfy
+     *  COND, which must be bound to my table and compare my column with
+     *  a literal, or null if I cannot find them more cheaply than a
+     *  scan.  The caller must not modify the result. */
+    int[] lookup(Condition cond) {
+        if (cond.equality() && !cond.numeric()) {
+            Rows rows = _hash.get(cond.literal());
+            return rows == null ? new int[0] : rows.toArray();
+        }
+        if (cond.numeric() != _table.column(_col).type().numeric()) {
+            return null;
+        }
+        int[] sorted = sorted();
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cond.compareLiteral(sorted[mid]) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int equal = lo;
+        hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cond.compareLiteral(sorted[mid]) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int greater = lo;
+
+        int[] result = new int[sorted.length];
+        int n = 0;
+        if (cond.holds(-1)) {
+            System.arraycopy(sorted, 0, result, n, equal);
+            n += equal;
+        }
+        if (cond.holds(0)) {
+            System.arraycopy(sorted, equal, result, n, greater - equal);
+            n += greater - equal;
+        }
+        if (cond.holds(1)) {
+            System.arraycopy(sorted, greater, result, n,
+                             sorted.length - greater);
+            n += sorted.length - greater;
+        }
+        result = Arrays.copyOf(result, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /** Return true iff sorted() would return without sorting any
+     *  rows. */
+    boolean ordered() {
+        return _sortedType == _table.column(_col).type()
+            && _sorted.length == _table.size();
+    }
+
+    /** Return the numbers of all rows of my table in order of their
+     *  values in my column, after merging into _sorted any rows added
+     *  since it was last brought up to date, or rebuilding it if my
+     *  column's type has changed.  The caller must not modify the
+     *  result. */
+    int[] sorted() {
+        ValueList.Type type = _table.column(_col).type();
+        if (type != _sortedType) {
+            _sorted = new int[0];
+            _sortedType = type;
+        }
+        int indexed = _sorted.length;
+        if (indexed < _table.size()) {
+            Integer[] pending = new Integer[_table.size() - indexed];
+            for (int i = 0; i < pending.length; i += 1) {
+                pending[i] = indexed + i;
+            }
+            Arrays.sort(pending, this::compareRows);
+
+            int[] merged = new int[_table.size()];
+            int i, j, k;
+            i = j = k = 0;
+            while (i < indexed && j < pending.length) {
+                if (compareRows(_sorted[i], pending[j]) <= 0) {
+                    merged[k++] = _sorted[i++];
+                } else {
+                    merged[k++] = pending[j++];
+                }
+            }
+            while (i < indexed) {
+                merged[k++] = _sorted[i++];
+            }
+            while (j < pending.length) {
+                merged[k++] = pending[j++];
+            }
+            _sorted = merged;
+        }
+        return _sorted;
+    }
+
+    /** Return <0, 0, or >0 as the value of my column in row ROW1 is
+     *  less than, equal to, or greater than that in row ROW2, compared
+     *  as values of _sortedType. */
+    private int compareRows(int row1, int row2) {
+        ValueList column = _table.column(_col);
+        switch (_sortedType) {
+        case INT: case LONG:
+            return Long.compare(column.longValue(row1),
+                                column.longValue(row2));
+        case DOUBLE:
+            return Double.compare(column.doubleValue(row1),
+                                  column.doubleValue(row2));
+        default:
+            return Condition.compareTrimmed(column.get(row1),
+                                            column.get(row2));
+        }
+    }
+
+    /** A growable list of row numbers. */
+    private static class Rows {
+        /** Append ROW. */
+        void add(int row) {
+            if (_size == _rows.length) {
+                _rows = Arrays.copyOf(_rows, 2 * _size);
+            }
+            _rows[_size] = row;
+            _size += 1;
+        }
+
+        /** Return my rows, in the order added. */
+        int[] toArray() {
+            if (_rows.length != _size) {
+                _rows = Arrays.copyOf(_rows, _size);
+            }
+            return _rows;
+        }
+
+        /** My rows (the first _size of them). */
+        private int[] _rows = new int[1];
+        /** Number of rows. */
+        private int _size;
+    }
+
+    /** The table I index. */
+    private final Table _table;
+    /** The number of the column I index. */
+    private final int _col;
+    /** Maps each trimmed value in my column to the rows that hold it. */
+    private final HashMap<String, Rows> _hash = new HashMap<>();
+    /** The numbers of rows 0 .. _sorted.length - 1 of my table, in order
+     *  of their values in my column, compared as values of
+     *  _sortedType. */
+    private int[] _sorted = new int[0];
+    /** The type of my column when _sorted was last brought up to
+     *  date. */
+    private ValueList.Type _sortedType;
+}
@@ -0,0 +1,91 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class ColumnIndexTest {
+
+    /** Return the numbers of the rows of TABLE satisfying COND, found by
+     *  testing each row. */
+    private static int[] scan(Table table, Condition cond) {
+        ArrayList<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < table.size(); row += 1) {
+            if (cond.test(row)) {
+                rows.add(row);
+            }
+        }
+        int[] result = new int[rows.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = rows.get(i);
+        }
+        return result;
+    }
+
+    /** Check that, for each relation and each of LITERALS, an index on
+     *  column 0 of TABLE either declines to answer or finds exactly the
+     *  rows that a scan does. */
+    private static void check(Table table, String... literals) {
+        Column col = new Column(table.getTitle(0), table);
+        for (String relation : new String[] {"<", "<=", "=", "!=", ">=",
+                                             ">"}) {
+            for (String literal : literals) {
+                Condition cond =
+                    new Condition(col, relation, literal).bind(table);
+                int[] found = table.lookup(Arrays.asList(cond));
+                if (found != null) {
+                    assertArrayEquals(relation + " " + literal,
+                                      scan(table, cond), found);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStrings() {
+        Table table = new Table(new String[] {"a", "b"});
+        String[] values = {"pear", " apple", "fig", "apple ", "kiwi", "fig"};
+        for (int i = 0; i < values.length; i += 1) {
+            table.add(new String[] {values[i], Integer.toString(i)});
+        }
+        table.createIndex(0);
+        check(table, "apple", "fig", "a", "z", "");
+        table.add(new String[] {"date", "6"});
+        table.add(new String[] {"apple", "7"});
+        check(table, "apple", "date", "g");
+    }
+
+    @Test
+    public void testNumbers() {
+        Table table = new Table(new String[] {"n"});
+        for (int i = 0; i < 50; i += 1) {
+            table.add(new String[] {Integer.toString((i * 37) % 101 - 50)});
+        }
+        table.createIndex(0);
+        check(table, "9", "10", "-3", "2.5", "1e1", "100", "x");
+        table.add(new String[] {"7.5"});
+        check(table, "9", "7.5", "7.50");
+        table.add(new String[] {"many"});
+        check(table, "9", "many", "10");
+    }
+
+    @Test
+    public void testUnindexed() {
+        Table table = new Table(new String[] {"a", "b"});
+        table.add(new String[] {"1", "2"});
+        table.createIndex(0);
+        Condition cond = new Condition(new Column("b", table), "=",
+                                       "2").bind(table);
+        assertNull(table.lookup(Arrays.asList(cond)));
+    }
+
+    @Test(expected = DBException.class)
+    public void testDuplicateIndex() {
+        Table table = new Table(new String[] {"a"});
+        table.createIndex(0);
+        table.createIndex(0);
+    }
+}
@@ -0,0 +1,521 @@
+package db61b;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+import static db61b.Utils.*;
+
+/** Reads and writes tables in a binary, column-oriented alternative to
+ *  the comma-separated .db format.  Such a file is still named NAME.db;
+ *  readers recognize it by the MAGIC bytes with which it starts.
+ *
+ *  All numbers are big-endian.  The file consists of
+ *  <pre>
+ *    header:  MAGIC, int version, int columns, int rows,
+ *             then for each column, int length and UTF-8 bytes of its
+ *                 title, and the ordinal of its ValueList.Type;
+ *    for each column, a block holding
+ *             int n, the number of distinct values in the column,
+ *             long[n + 1] offsets, where value k is bytes offsets[k]
+ *                 to offsets[k + 1] of the following data,
+ *             byte[offsets[n]] data, the UTF-8 encoded values,
+ *             int[rows] codes, the number of each row's value;
+ *          or, for a column with too many distinct values to be worth
+ *             a dictionary, a plain block holding
+ *             int PLAIN,
+ *             long[rows + 1] offsets and data, as above, of the
+ *                 value in each row;
+ *    index:   int[rows], the row numbers in lexicographic order;
+ *    footer:  long[columns] offsets of the column blocks,
+ *             long offset of the index, int columns, END_MAGIC.
+ *  </pre>
+ *  Reading therefore involves no parsing: the file is memory-mapped,
+ *  and values are decoded from it only as they are used (see
+ *  MappedList), so a table read this way may be far larger than the
+ *  heap.  Its rows need neither re-sorting nor duplicate checking.
+ *  @author andrew */
+class ColumnStore {
+
+    /** Bytes that begin a columnar file. */
+    static final byte[] MAGIC = "DB61BCOL".getBytes(StandardCharsets.US_ASCII);
+    /** Bytes that end a columnar file. */
+    static final byte[] END_MAGIC =
+        "DB61BEND".getBytes(StandardCharsets.US_ASCII);
+    /** Version of the format written by write. */
+    static final int VERSION = 3;
+    /** Marks a plain column block. */
+    static final int PLAIN = -1;
+
+    /** Return true iff the file NAME.db exists and is in columnar
+     *  format. */
+    static boolean isColumnar(String name) {
+        try (InputStream input = new FileInputStream(name + ".db")) {
+            byte[] start = new byte[MAGIC.length];
+            int n = input.readNBytes(start, 0, start.length);
+            return n == MAGIC.length && Arrays.equals(start, MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Read the columnar file NAME.db and return it as a Table.  The
+     *  table's columns are MappedLists over a memory mapping of the
+     *  file, and its order is read from the file when first needed.
+     *  Format errors cause a DBException. */
+    static Table readTable(String name) {
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(name + ".db"),
+                              StandardOpenOption.READ)) {
+            Region file = new Region(channel);
+
+            long pos = MAGIC.length;
+            if (file.getInt(pos) != VERSION) {
+                throw error("unsupported version of %s.db", name);
+            }
+            int columns = file.getInt(pos + 4);
+            int rows = file.getInt(pos + 8);
+            pos += 12;
+            String[] titles = new String[columns];
+            ValueList.Type[] types = new ValueList.Type[columns];
+            for (int k = 0; k < columns; k += 1) {
+                int length = file.getInt(pos);
+                titles[k] = file.getString(pos + 4, length);
+                types[k] = ValueList.Type.values()[file.getInt(pos + 4
+                                                               + length)];
+                pos += 8 + length;
+            }
+
+            long footer = file.size() - END_MAGIC.length - 4
+                - 8L * (columns + 1);
+            if (footer < pos
+                || file.getInt(file.size() - END_MAGIC.length - 4)
+                   != columns) {
+                throw error("damaged footer in %s.db", name);
+            }
+            ValueList[] values = new ValueList[columns];
+            for (int k = 0; k < columns; k += 1) {
+                values[k] = new MappedList(file, file.getLong(footer + 8L * k),
+                                           rows, types[k]);
+            }
+            long indexStart = file.getLong(footer + 8L * columns);
+            return new Table(titles, values,
+                             () -> file.getInts(indexStart, rows));
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof DBException) {
+                throw (DBException) e;
+            }
+            throw error("problem reading from %s.db", name);
+        }
+    }
+
+    /** Write TABLE into the file NAME.db in columnar format.  Any I/O
+     *  errors cause a DBException.  As for Table.writeTable, the data
+     *  are written and synced to a temporary file that then replaces
+     *  NAME.db, and which is removed if anything goes wrong. */
+    static void writeTable(Table table, String name) {
+        File temp = new File(name + ".db.tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp)) {
+                DataOutputStream output =
+                    new DataOutputStream(new BufferedOutputStream(file,
+                                                                  1 << 16));
+                writeColumns(table, output);
+                output.flush();
+                file.getFD().sync();
+            }
+            replaceFile(temp.getPath(), name + ".db");
+        } catch (IOException e) {
+            throw error("trouble writing to %s.db", name);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Write TABLE to OUTPUT in columnar format. */
+    private static void writeColumns(Table table, DataOutputStream output)
+        throws IOException {
+        int columns = table.columns(), rows = table.size();
+        long pos = 0;
+        output.write(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(columns);
+        output.writeInt(rows);
+        pos += MAGIC.length + 12;
+        for (int k = 0; k < columns; k += 1) {
+            byte[] title =
+                table.getTitle(k).getBytes(StandardCharsets.UTF_8);
+            output.writeInt(title.length);
+            output.write(title);
+            output.writeInt(table.column(k).type().ordinal());
+            pos += 8 + title.length;
+        }
+
+        long[] blocks = new long[columns];
+        for (int k = 0; k < columns; k += 1) {
+            blocks[k] = pos;
+            ValueList column = table.column(k);
+            HashMap<String, Integer> numbers = new HashMap<>();
+            ArrayList<String> dictionary =
+                column.encoded() ? null : dictionary(column, numbers);
+            if (column.encoded()) {
+                int n = column.dictionarySize();
+                output.writeInt(n);
+                pos += 4 + 8L * (n + 1) + 4L * rows
+                    + writeValues(output, n, column::valueOf);
+                for (int row = 0; row < rows; row += 1) {
+                    output.writeInt(column.code(row));
+                }
+            } else if (dictionary != null) {
+                int n = dictionary.size();
+                output.writeInt(n);
+                pos += 4 + 8L * (n + 1) + 4L * rows
+                    + writeValues(output, n, dictionary::get);
+                for (int row = 0; row < rows; row += 1) {
+                    output.writeInt(numbers.get(column.get(row)));
+                }
+            } else {
+                output.writeInt(PLAIN);
+                pos += 4 + 8L * (rows + 1)
+                    + writeValues(output, rows, column::get);
+            }
+        }
+
+        long indexStart = pos;
+        for (int row : table.index()) {
+            output.writeInt(row);
+        }
+        for (long block : blocks) {
+            output.writeLong(block);
+        }
+        output.writeLong(indexStart);
+        output.writeInt(columns);
+        output.write(END_MAGIC);
+    }
+
+    /** Return the distinct values of COLUMN in order of first
+     *  appearance, setting NUMBERS to map each to its position, unless
+     *  there are more than MappedList.CACHED_DICTIONARY_SIZE of them, in
+     *  which case return null.  The work thus needs bounded space, even
+     *  if COLUMN is mapped from a file far larger than the heap. */
+    private static ArrayList<String> dictionary(ValueList column,
+                                                HashMap<String,
+                                                        Integer> numbers) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int row = 0; row < column.size(); row += 1) {
+            String value = column.get(row);
+            if (!numbers.containsKey(value)) {
+                if (result.size() == MappedList.CACHED_DICTIONARY_SIZE) {
+                    return null;
+                }
+                numbers.put(value, result.size());
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /** Write to OUTPUT the offsets and then the UTF-8 encodings of the N
+     *  strings VALUES.apply(0), ..., VALUES.apply(N - 1), taking each
+     *  from VALUES again as it is needed rather than holding them all.
+     *  Return the number of bytes in the encodings. */
+    private static long writeValues(DataOutputStream output, int n,
+                                    IntFunction<String> values)
+        throws IOException {
+        long offset = 0;
+        for (int k = 0; k < n; k += 1) {
+            output.writeLong(offset);
+            offset += values.apply(k).getBytes(StandardCharsets.UTF_8).length;
+        }
+        output.writeLong(offset);
+        for (int k = 0; k < n; k += 1) {
+            output.write(values.apply(k).getBytes(StandardCharsets.UTF_8));
+        }
+        return offset;
+    }
+
+    /** A read-only memory mapping of an entire file, which may be
+     *  larger than the 2GB that a single MappedByteBuffer can cover.  The
+     *  file is mapped in parts of PART bytes; each part's mapping
+     *  extends 8 bytes into the next so that any int or long lies
+     *  entirely within the part in which it starts. */
+    static class Region {
+
+        /** Size of each part. */
+        static final long PART = 1L << 30;
+
+        /** A mapping of all of CHANNEL. */
+        Region(FileChannel channel) throws IOException {
+            _size = channel.size();
+            _parts = new ByteBuffer[(int) ((_size + PART - 1) / PART)];
+            for (int p = 0; p < _parts.length; p += 1) {
+                long start = p * PART;
+                _parts[p] =
+                    channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                Math.min(_size - start, PART + 8));
+            }
+        }
+
+        /** Return my size in bytes. */
+        long size() {
+            return _size;
+        }
+
+        /** Return the int at position POS. */
+        int getInt(long pos) {
+            return _parts[(int) (pos / PART)].getInt((int) (pos % PART));
+        }
+
+        /** Return the long at position POS. */
+        long getLong(long pos) {
+            return _parts[(int) (pos / PART)].getLong((int) (pos % PART));
+        }
+
+        /** Return the N ints starting at position POS. */
+        int[] getInts(long pos, int n) {
+            int[] result = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                result[i] = getInt(pos + 4L * i);
+            }
+            return result;
+        }
+
+        /** Return the string whose UTF-8 encoding is the LENGTH bytes
+         *  starting at position POS. */
+        String getString(long pos, int length) {
+            byte[] bytes = new byte[length];
+            int done = 0;
+            while (done < length) {
+                int offset = (int) ((pos + done) % PART);
+                int n = (int) Math.min(length - done, PART - offset);
+                _parts[(int) ((pos + done) / PART)].get(offset, bytes,
+                                                        done, n);
+                done += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** Mappings of my parts. */
+        private final ByteBuffer[] _parts;
+        /** My size in bytes. */
+        private final long _size;
+    }
+
+    /** A column stored in a columnar file, whose values are decoded from
+     *  a mapping of the file as they are requested, so that the column
+     *  occupies almost no heap.  Dictionaries of at most
+     *  CACHED_DICTIONARY_SIZE values are decoded once, when the column
+     *  is opened, in which case the column is dictionary-encoded, using
+     *  the codes from the file.  Values added after the table was read
+     *  are kept on the heap, and are added to the dictionary if there
+     *  is one. */
+    static class MappedList extends ValueList {
+
+        /** Largest dictionary that is decoded in advance. */
+        static final int CACHED_DICTIONARY_SIZE = 1 << 16;
+
+        /** The column of ROWS rows, all of type TYPE, whose block starts at
+         *  position START of FILE. */
+        MappedList(Region file, long start, int rows, Type type) {
+            _file = file;
+            _rows = rows;
+            _type = type;
+            _plain = file.getInt(start) == PLAIN;
+            _distinct = _plain ? rows : file.getInt(start);
+            _offsets = start + 4;
+            _data = _offsets + 8L * (_distinct + 1);
+            _codes = _data + file.getLong(_offsets + 8L * _distinct);
+            if (!_plain && _distinct <= CACHED_DICTIONARY_SIZE) {
+                _dictionary = new ArrayList<>();
+                for (int c = 0; c < _distinct; c += 1) {
+                    _dictionary.add(decode(c));
+                }
+                if (_type.numeric()) {
+                    _doubles = new double[_distinct];
+                    _longs = new long[_distinct];
+                    for (int c = 0; c < _distinct; c += 1) {
+                        addNumber(c);
+                    }
+                }
+            }
+        }
+
+        @Override
+        int size() {
+            return _rows + _added.size();
+        }
+
+        @Override
+        String get(int row) {
+            if (_dictionary != null) {
+                return _dictionary.get(code(row));
+            }
+            if (row < 0 || row >= size()) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (row >= _rows) {
+                return _added.get(row - _rows);
+            }
+            return decode(_plain ? row : _file.getInt(_codes + 4L * row));
+        }
+
+        @Override
+        void add(String value) {
+            _type = _type.widen(Type.of(value));
+            if (_dictionary != null) {
+                int code = codeOf(value);
+                if (code == -1) {
+                    code = _dictionary.size();
+                    _dictionary.add(value);
+                    _numbers.put(value, code);
+                }
+                _addedCodes.add(code);
+            }
+            _added.add(value);
+            if (_doubles != null) {
+                if (!_type.numeric()) {
+                    _doubles = null;
+                    _longs = null;
+                } else {
+                    for (int c = _doubles.length; c < _dictionary.size();
+                         c += 1) {
+                        _doubles = Arrays.copyOf(_doubles, c + 1);
+                        _longs = Arrays.copyOf(_longs, c + 1);
+                        addNumber(c);
+                    }
+                }
+            }
+        }
+
+        @Override
+        Type type() {
+            return _type;
+        }
+
+        @Override
+        long longValue(int row) {
+            if (_longs != null) {
+                return _longs[code(row)];
+            }
+            return super.longValue(row);
+        }
+
+        @Override
+        double doubleValue(int row) {
+            if (_doubles != null) {
+                return _doubles[code(row)];
+            }
+            return super.doubleValue(row);
+        }
+
+        /** Record in _doubles and _longs the numeric value of dictionary
+         *  entry CODE. */
+        private void addNumber(int code) {
+            String value = _dictionary.get(code);
+            _doubles[code] = Double.parseDouble(value);
+            if (_type != Type.DOUBLE) {
+                _longs[code] = Long.parseLong(value);
+            }
+        }
+
+        @Override
+        int distinctValues() {
+            if (_dictionary != null) {
+                return _dictionary.size();
+            }
+            return _distinct + _added.size();
+        }
+
+        @Override
+        boolean encoded() {
+            return _dictionary != null;
+        }
+
+        @Override
+        int code(int row) {
+            if (row < 0 || row >= size()) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (row >= _rows) {
+                return _addedCodes.get(row - _rows);
+            }
+            return _file.getInt(_codes + 4L * row);
+        }
+
+        @Override
+        int codeOf(String value) {
+            if (_numbers == null) {
+                _numbers = new HashMap<>();
+                for (int c = 0; c < _dictionary.size(); c += 1) {
+                    _numbers.put(_dictionary.get(c), c);
+                }
+            }
+            Integer code = _numbers.get(value);
+            return code == null ? -1 : code;
+        }
+
+        @Override
+        int dictionarySize() {
+            return _dictionary.size();
+        }
+
+        @Override
+        String valueOf(int code) {
+            return _dictionary.get(code);
+        }
+
+        /** Return dictionary entry number CODE from _file. */
+        private String decode(int code) {
+            long start = _file.getLong(_offsets + 8L * code);
+            long end = _file.getLong(_offsets + 8L * code + 8);
+            if (start < 0 || end < start || end - start > Integer.MAX_VALUE
+                || _data + end > _codes) {
+                throw error("damaged dictionary in columnar file");
+            }
+            return _file.getString(_data + start, (int) (end - start));
+        }
+
+        /** File containing my block. */
+        private final Region _file;
+        /** Number of rows stored in _file. */
+        private final int _rows;
+        /** True iff my block in _file is plain, so that its entries
+         *  are the values of my rows, in order, and it has no codes. */
+        private final boolean _plain;
+        /** Number of entries in my dictionary (or plain block) in
+         *  _file. */
+        private final int _distinct;
+        /** Positions in _file of my dictionary offsets, dictionary data,
+         *  and codes (or where they would be, in a plain block). */
+        private final long _offsets, _data, _codes;
+        /** My decoded dictionary, or null if it is too large. */
+        private ArrayList<String> _dictionary;
+        /** Inverse of _dictionary, built when first needed. */
+        private HashMap<String, Integer> _numbers;
+        /** Values appended since the table was read. */
+        private final ArrayList<String> _added = new ArrayList<>();
+        /** Codes of _added, if I have a _dictionary. */
+        private final ArrayList<Integer> _addedCodes = new ArrayList<>();
+        /** Narrowest type holding all my values. */
+        private Type _type;
+        /** If I have a _dictionary and my type is numeric, the numeric
+         *  values of its entries, by code (_longs only for INT or LONG
+         *  types); otherwise null. */
+        private double[] _doubles;
+        /** See _doubles. */
+        private long[] _longs;
+    }
+}
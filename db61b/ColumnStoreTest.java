@@ -0,0 +1,202 @@
+package db61b;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ColumnStoreTest {
+
+    @Before
+    public void createDirectory() throws IOException {
+        _dir = Files.createTempDirectory("columnstore").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(_dir);
+    }
+
+    /** Delete FILE, and first its contents if it is a directory. */
+    private static void delete(File file) {
+        File[] contents = file.listFiles();
+        if (contents != null) {
+            for (File member : contents) {
+                delete(member);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return the name, for Table.readTable and the like, of a table
+     *  stored in the file BASE.db in the test directory. */
+    private String name(String base) {
+        return new File(_dir, base).getPath();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Table table = new Table(new String[] {"Name", "Sex", "Note"});
+        table.add(new String[] {"Braund, Mr. Owen", "male", ""});
+        table.add(new String[] {"Cumings, Mrs. John", "female",
+                                "\u00e9t\u00e9"});
+        table.add(new String[] {"Allen, Miss. Elisabeth", "female", ""});
+        ColumnStore.writeTable(table, name("columnar"));
+        assertTrue(ColumnStore.isColumnar(name("columnar")));
+
+        Table copy = Table.readTable(name("columnar"));
+        assertArrayEquals(table.getColumnNames(), copy.getColumnNames());
+        assertEquals(3, copy.size());
+        for (int row = 0; row < 3; row += 1) {
+            for (int col = 0; col < 3; col += 1) {
+                assertEquals(table.get(row, col), copy.get(row, col));
+            }
+        }
+        assertArrayEquals(new int[] {2, 0, 1}, copy.index());
+
+        assertFalse(copy.add(new String[] {"Braund, Mr. Owen", "male", ""}));
+        assertTrue(copy.add(new String[] {"A", "male", ""}));
+        assertArrayEquals(new int[] {3, 2, 0, 1}, copy.index());
+    }
+
+    @Test
+    public void testNumericTypes() {
+        Table table = new Table(new String[] {"n", "x"});
+        table.add(new String[] {"3", "1.5"});
+        table.add(new String[] {"-12", "2"});
+        ColumnStore.writeTable(table, name("numeric"));
+        Table copy = Table.readTable(name("numeric"));
+        assertEquals(ValueList.Type.INT, copy.column(0).type());
+        assertEquals(ValueList.Type.DOUBLE, copy.column(1).type());
+        assertEquals(-12, copy.column(0).longValue(1));
+        assertEquals(2.0, copy.column(1).doubleValue(1), 0.0);
+        copy.add(new String[] {"4000000000", "x"});
+        assertEquals(ValueList.Type.LONG, copy.column(0).type());
+        assertEquals(4000000000L, copy.column(0).longValue(2));
+        assertEquals(ValueList.Type.STRING, copy.column(1).type());
+    }
+
+    @Test
+    public void testTextIsNotColumnar() {
+        Table table = new Table(new String[] {"a"});
+        table.add(new String[] {"DB61BCOL"});
+        table.writeTable(name("text"));
+        assertFalse(ColumnStore.isColumnar(name("text")));
+    }
+
+    @Test
+    public void testLargeDictionaryAndOverwrite() {
+        Table table = new Table(new String[] {"k", "v"});
+        int n = ColumnStore.MappedList.CACHED_DICTIONARY_SIZE + 10;
+        for (int i = 0; i < n; i += 1) {
+            table.add(new String[] {"k" + i, "" + (i % 3)});
+        }
+        ColumnStore.writeTable(table, name("mapped"));
+        Table mapped = Table.readTable(name("mapped"));
+        assertEquals(n, mapped.size());
+        assertEquals("k12345", mapped.get(12345, 0));
+        assertEquals(n, mapped.distinctValues(0));
+        assertEquals(3, mapped.distinctValues(1));
+
+        mapped.writeTable(name("mapped"));
+        assertEquals("k" + (n - 1), mapped.get(n - 1, 0));
+        Table text = Table.readTable(name("mapped"));
+        assertEquals(n, text.size());
+        int row = 0;
+        while (!text.get(row, 0).equals("k" + (n - 1))) {
+            row += 1;
+        }
+        assertEquals("" + ((n - 1) % 3), text.get(row, 1));
+    }
+
+    @Test
+    public void testOffsetsPastTwoGigabytes() throws IOException {
+        int n = ColumnStore.MappedList.CACHED_DICTIONARY_SIZE + 1;
+        long width = (1L << 31) / (n - 1);
+        File file = new File(_dir, "offsets.db");
+        try (FileChannel channel =
+             FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                              StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(40 + 8 * (n + 1));
+            header.put(ColumnStore.MAGIC).putInt(ColumnStore.VERSION);
+            header.putInt(1).putInt(2).putInt(1).put((byte) 'k');
+            header.putInt(ValueList.Type.STRING.ordinal());
+            long block = header.position();
+            header.putInt(n);
+            for (int c = 0; c < n; c += 1) {
+                header.putLong(width * c);
+            }
+            header.putLong(width * (n - 1) + 3);
+            long data = header.position();
+            header.flip();
+            channel.write(header);
+
+            ByteBuffer rest = ByteBuffer.allocate(64);
+            rest.put("big".getBytes()).putInt(n - 1).putInt(0);
+            long index = data + width * (n - 1) + 3 + 8;
+            rest.putInt(1).putInt(0).putLong(block).putLong(index);
+            rest.putInt(1).put(ColumnStore.END_MAGIC);
+            rest.flip();
+            channel.write(rest, data + width * (n - 1));
+        }
+        Table table = Table.readTable(name("offsets"));
+        assertEquals(2, table.size());
+        assertEquals("big", table.get(0, 0));
+        assertEquals(width, table.get(1, 0).length());
+    }
+
+    @Test
+    public void testFailedWriteLeavesNoTemporary() throws IOException {
+        File blocker = new File(_dir, "t.db");
+        blocker.mkdir();
+        new File(blocker, "x").createNewFile();
+        Table table = new Table(new String[] {"a"});
+        table.add(new String[] {"1"});
+        try {
+            ColumnStore.writeTable(table, name("t"));
+            fail("replaced a non-empty directory");
+        } catch (DBException e) {
+            assertFalse(new File(_dir, "t.db.tmp").exists());
+        }
+    }
+
+    @Test
+    public void testStoreMappedTable() {
+        Table table = new Table(new String[] {"k", "v"});
+        int n = ColumnStore.MappedList.CACHED_DICTIONARY_SIZE + 10;
+        for (int i = 0; i < n; i += 1) {
+            table.add(new String[] {"k" + i, "" + (i % 3)});
+        }
+        String name = name("stored");
+        ColumnStore.writeTable(table, name);
+        Table mapped = Table.readTable(name);
+        assertFalse(mapped.column(0).encoded());
+        mapped.add(new String[] {"added", "7"});
+        ColumnStore.writeTable(mapped, name);
+        Table copy = Table.readTable(name);
+        assertEquals(n + 1, copy.size());
+        assertFalse(copy.column(0).encoded());
+        assertTrue(copy.column(1).encoded());
+        assertEquals(ValueList.Type.INT, copy.column(1).type());
+        for (int row = 0; row <= n; row += 1) {
+            assertEquals(mapped.get(row, 0), copy.get(row, 0));
+            assertEquals(mapped.get(row, 1), copy.get(row, 1));
+        }
+        assertEquals(7, copy.column(1).longValue(n));
+        assertArrayEquals(mapped.index(), copy.index());
+    }
+
+    /** Directory holding the files written by a test. */
+    private File _dir;
+}
@@ -11,10 +11,16 @@
 package db61b;
 
 
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.PrintWriter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Scanner;
 
 import static db61b.Utils.*;
@@ -123,16 +129,52 @@ class CommandInterpreter {
      */
 
 
+    /** Size in bytes of the buffer through which results are written. */
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /** A new CommandInterpreter executing commands read from INP, writing
-     *  prompts on PROMPTER, if it is non-null. */
+     *  prompts on PROMPTER, if it is non-null, and results on the
+     *  standard output. */
     CommandInterpreter(Scanner inp, PrintStream prompter) {
+        this(inp, prompter, System.out);
+    }
+
+    /** A new CommandInterpreter executing commands read from INP, writing
+     *  prompts on PROMPTER, if it is non-null, and results on OUTPUT.
+     *  Results are buffered, and OUTPUT is flushed at the end of each
+     *  statement. */
+    CommandInterpreter(Scanner inp, PrintStream prompter,
+                       OutputStream output) {
+        this(inp, prompter, output, new Database());
+    }
+
+    /** A new CommandInterpreter as for CommandInterpreter(INP, PROMPTER,
+     *  OUTPUT), whose statements operate on the tables in DATABASE
+     *  rather than on a new, empty database. */
+    CommandInterpreter(Scanner inp, PrintStream prompter,
+                       OutputStream output, Database database) {
         _input = new Tokenizer(inp, prompter);
-        _database = new Database();
+        _database = database;
+        _output = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(output), OUTPUT_BUFFER_SIZE));
     }
 
     /** Parse and execute one statement from the token stream.  Return true
-     *  iff the command is something other than quit or exit. */
+     *  iff the command is something other than quit or exit.  Any
+     *  results it produces have been written out when it returns or
+     *  throws. */
     boolean statement() {
+        _input.flush();
+        try {
+            return statementHelper();
+        } finally {
+            _output.flush();
+        }
+    }
+
+    /** Parse and execute one statement, as for statement(), leaving its
+     *  results in my output buffer. */
+    private boolean statementHelper() {
         switch (_input.peek()) {
         case "create":
             createStatement();
@@ -145,6 +187,9 @@ class CommandInterpreter {
             return false;
         case "*EOF*":
             return false;
+        case "explain":
+            explainStatement();
+            break;
         case "insert":
             insertStatement();
             break;
@@ -163,9 +208,26 @@ class CommandInterpreter {
         return true;
     }
 
-    /** Parse and execute a create statement from the token stream. */
+    /** Parse and execute a create statement from the token stream.
+     *  Besides "create table", this handles
+     *      create index on <table name> ( <column name> ) ;
+     *  which indexes that column for use by select (see ColumnIndex). */
     void createStatement() {
         _input.next("create");
+        if (_input.nextIf("index")) {
+            _input.next("on");
+            Table table = tableName();
+            _input.next("(");
+            String column = columnName();
+            _input.next(")");
+            int col = table.findColumn(column);
+            if (col == -1) {
+                throw error("unknown column: %s", column);
+            }
+            table.createIndex(col);
+            _input.next(";");
+            return;
+        }
         _input.next("table");
         String name = name();
         Table table = tableDefinition();
@@ -209,12 +271,18 @@ class CommandInterpreter {
 
             while (_input.nextIf(",")) {
 
+                if (k == cols) {
+                    throw error("wrong number of values");
+                }
                 values[k] = literal();
                 k++;
 
             }
 
             _input.next(")");
+            if (k != cols) {
+                throw error("wrong number of values");
+            }
             table.add(values);
 
             values = new String[cols];
@@ -235,21 +303,28 @@ class CommandInterpreter {
 
         Table table = Table.readTable(name);
         _database.put(name, table);
-        System.out.println("Loaded " + name + ".db");
+        _output.println("Loaded " + name + ".db");
 
 
         _input.next(";");
     }
 
-    /** Parse and execute a store statement from the token stream. */
+    /** Parse and execute a store statement from the token stream.
+     *  "store T as binary" writes T in the columnar format of
+     *  ColumnStore rather than as text. */
     void storeStatement() {
         _input.next("store");
         String name = _input.peek();
         Table table = tableName();
 
-        table.writeTable(name);
+        if (_input.nextIf("as")) {
+            _input.next("binary");
+            ColumnStore.writeTable(table, name);
+        } else {
+            table.writeTable(name);
+        }
 
-        System.out.printf("Stored %s.db%n", name);
+        _output.printf("Stored %s.db%n", name);
         _input.next(";");
     }
 
@@ -264,19 +339,39 @@ class CommandInterpreter {
             throw error("unknown table: %s", name);
         }
         _input.next(";");
-        System.out.print("Contents of ");
-        System.out.println(name + ":");
-        table.print();
+        _output.print("Contents of ");
+        _output.println(name + ":");
+        table.print(_output);
     }
 
     /** Parse and execute a select statement from the token stream. */
     void selectStatement() {
         Table table = selectClause();
-        System.out.println("Search results:");
-        table.print();
+        _output.println("Search results:");
+        table.print(_output);
         _input.next(";");
     }
 
+    /** Parse and execute an explain statement,
+     *      explain analyze <select clause> ;
+     *  which executes the select clause and prints, instead of its
+     *  result, the operators that executed it, with the rows that flowed
+     *  into and out of each and the time and memory each took (see
+     *  Profile). */
+    void explainStatement() {
+        _input.next("explain");
+        _input.next("analyze");
+        _profile = new Profile();
+        try {
+            selectClause();
+            _input.next(";");
+            _output.println("Query plan:");
+            _profile.print(_output);
+        } finally {
+            _profile = null;
+        }
+    }
+
     /** Parse and execute a table definition, returning the specified
      *  table. */
     Table tableDefinition() {
@@ -303,22 +398,105 @@ class CommandInterpreter {
     }
 
     /** Parse and execute a select clause from the token stream, returning the
-     *  resulting table. */
+     *  resulting table.  The clause is parsed only if the plan cache of
+     *  my database (see PlanCache) holds no Query with the same
+     *  normalized text, which is then executed with the clause's
+     *  literals as its parameters. */
     Table selectClause() {
+        ArrayList<String> literals = new ArrayList<>();
+        Query query = query(literals);
+        if (literals.contains(null)) {
+            throw error("parameters are allowed only in prepared "
+                        + "statements");
+        }
+        return select(query, literals.toArray(new String[literals.size()]));
+    }
+
+    /** Parse a select clause, which must be followed by nothing but an
+     *  optional semicolon, adding to LITERALS the value of each of its
+     *  literals and null for each of its parameters (written "?"), in
+     *  order, and return it as a Query, for a PreparedStatement. */
+    Query preparedClause(ArrayList<String> literals) {
+        Query query = query(literals);
+        _input.nextIf(";");
+        if (!_input.nextIs("*EOF*")) {
+            throw error("unexpected token: '%s'", _input.peek());
+        }
+        return query;
+    }
+
+    /** Read a select clause from the token stream, up to but not
+     *  including the semicolon that ends it, adding to LITERALS the value
+     *  of each of its literals and null for each of its parameters, in
+     *  order, and return it as a Query, taken from my database's plan
+     *  cache if possible, and otherwise parsed and added to the cache. */
+    Query query(ArrayList<String> literals) {
+        int start = _input.mark();
+        String key = normalizedClause(literals);
+        PlanCache plans = _database.plans();
+        Query query = plans.get(key);
+        if (query == null || query.parameters() != literals.size()) {
+            int end = _input.mark();
+            _input.reset(start);
+            query = selectQuery();
+            if (_input.mark() == end) {
+                plans.put(key, query);
+            }
+        }
+        return query;
+    }
+
+    /** Read the tokens of a select clause, up to but not including the
+     *  semicolon that ends it, adding to LITERALS the value of each of
+     *  its literals and null for each of its parameters, and return its
+     *  normalized text: its tokens separated by blanks, with "?" in
+     *  place of each literal. */
+    String normalizedClause(ArrayList<String> literals) {
+        StringBuilder text = new StringBuilder();
+        while (!_input.nextIs(";") && !_input.nextIs("*EOF*")) {
+            if (_input.nextIs(Tokenizer.LITERAL)) {
+                literals.add(literal());
+                text.append("? ");
+            } else if (_input.nextIf("?")) {
+                literals.add(null);
+                text.append("? ");
+            } else {
+                text.append(_input.next()).append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    /** Parse a select clause from the token stream, returning it as a
+     *  Query with a parameter for each of its literals and each "?" in
+     *  place of a literal. */
+    Query selectQuery() {
         _input.next("select");
         ArrayList<String> columnNames = new ArrayList<>();
         columnNamesHelper(columnNames);
 
         _input.next("from");
         ArrayList<Table> tables = new ArrayList<>();
-        tablesHelper(tables);
+        ArrayList<String> tableNames = new ArrayList<>();
+        tablesHelper(tables, tableNames);
 
-        ArrayList<String> whereColumn = new ArrayList<>();
-        ArrayList<String> whereValue = new ArrayList<>();
-        ArrayList<String> whereCondition = new ArrayList<>();
-        HashMap<String, Boolean> isValueNotCol = new HashMap<>();
+        Query query = new Query(columnNames, tableNames, tables);
         if (_input.nextIf("where")) {
-            whereHelper(whereColumn, whereValue, whereCondition, isValueNotCol);
+            conditionClause(query, tables.toArray(new Table[tables.size()]));
+        }
+        return query;
+    }
+
+    /** Execute QUERY with VALUES as the values of its parameters,
+     *  returning the resulting table. */
+    Table select(Query query, String[] values) {
+        List<String> columnNames = query.columnNames();
+        ArrayList<Table> tables = query.tables();
+        ArrayList<Condition> conditions = query.conditions(values);
+        if (_profile != null) {
+            for (int k = 0; k < tables.size(); k++) {
+                _profile.name(tables.get(k), query.tableNames().get(k));
+            }
         }
 
         Table returnTable = new Table(columnNames);
@@ -329,170 +507,391 @@ class CommandInterpreter {
             for (String name : columnNames) {
                 columnIndexes.add(currentTable.findColumn(name));
             }
-            if (whereColumn.size() == 0) {
+            if (conditions.size() == 0) {
                 noCondSelectHelper(currentTable, columnIndexes, returnTable);
             } else {
-                singleTableSelectCondHelper(whereColumn,
+                singleTableSelectCondHelper(conditions,
                         currentTable,
-                        whereValue,
-                        isValueNotCol,
-                        whereCondition,
                         returnTable,
                         columnIndexes);
 
             }
         } else {
-            twoTableSelectHelper(columnNames,
+            multiTableSelectHelper(columnNames,
                     tables,
-                    whereColumn,
-                    whereValue,
-                    whereCondition,
-                    isValueNotCol,
+                    conditions,
                     returnTable);
         }
         return returnTable;
     }
 
-    /**Helper for two table selection.
+    /**Helper for selection from several tables, joined naturally.
+     * Each table is first filtered by the conditions that mention only
+     * its own columns.  The filtered tables are then joined two at a
+     * time, in the order that the cost model in joinEstimate predicts
+     * will keep the intermediate results smallest, and each condition
+     * relating columns of different tables is tested as soon as the
+     * tables joined so far have all of its columns.  The joins and
+     * those tests form a pipeline of Operators, through which the
+     * joined rows flow one at a time, as tuples of row numbers, to be
+     * projected straight into returnTable; no intermediate result is
+     * stored as a Table.  The first join is a merge join (with no hash
+     * table) if both its inputs are already sorted on their common
+     * columns (see KeyOrder), or if its hash table would take more
+     * memory than it may use, in which case the inputs are sorted
+     * externally first (see ExternalSort).  Otherwise, a first join of
+     * two large inputs is done in parallel (see ParallelJoin).
      *
      * @param columnNames col names
      * @param tables tables
-     * @param whereColumn where  column
-     * @param whereValue where value
-     * @param whereCondition conditions
-     * @param isValueNotCol whether value or col
+     * @param conditions where conditions
      * @param returnTable returning table
      */
-    void twoTableSelectHelper(ArrayList<String> columnNames,
-                              ArrayList<Table> tables,
-                              ArrayList<String> whereColumn,
-                              ArrayList<String> whereValue,
-                              ArrayList<String> whereCondition,
-                              HashMap<String, Boolean> isValueNotCol,
-                              Table returnTable) {
-        Table table1 = tables.get(0);
-        Table table2 = tables.get(1);
-        Table tempTable = tempTableHelper(table1, table2);
-
-        ArrayList<Integer> columnIndexes = new ArrayList<>();
-
-        for (String name : columnNames) {
-            columnIndexes.add(tempTable.findColumn(name));
-        }
-        if (whereColumn.size() == 0) {
-            noCondSelectHelper(tempTable, columnIndexes, returnTable);
+    void multiTableSelectHelper(List<String> columnNames,
+                                ArrayList<Table> tables,
+                                ArrayList<Condition> conditions,
+                                Table returnTable) {
+        Table[] from = tables.toArray(new Table[tables.size()]);
+        boolean[] pushed = new boolean[conditions.size()];
+        int[][] inputRows = new int[from.length][];
+        Profile.Node[] scans = new Profile.Node[from.length];
+        for (int k = 0; k < from.length; k++) {
+            scans[k] = begin();
+            inputRows[k] = toArray(pushDownHelper(from[k], conditions,
+                                                  pushed, scans[k]));
+        }
+
+        int first = 0, second = 1;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < from.length; i++) {
+            for (int j = i + 1; j < from.length; j++) {
+                double estimate = joinEstimate(from,
+                        Operator.cover(new boolean[from.length], i),
+                        inputRows[i].length, from[j], inputRows[j].length);
+                if (estimate < best) {
+                    best = estimate;
+                    first = i;
+                    second = j;
+                }
+            }
+        }
+        if (inputRows[first].length < inputRows[second].length) {
+            int k = first;
+            first = second;
+            second = k;
+        }
+
+        ArrayList<Integer> common1 = new ArrayList<>();
+        ArrayList<Integer> common2 = new ArrayList<>();
+        for (int col = 0; col < from[first].columns(); col++) {
+            int col2 = from[second].findColumn(from[first].getTitle(col));
+            if (col2 != -1) {
+                common1.add(col);
+                common2.add(col2);
+            }
+        }
+        int[] key1 = toArray(common1), key2 = toArray(common2);
+        KeyOrder.Kind order = KeyOrder.presorted(from[first], key1,
+                                                 from[second], key2);
+        Operator plan;
+        String kind;
+        Profile.Node join = begin(scans[first], scans[second]);
+        if (order != null) {
+            kind = "Merge join";
+            plan = new Operator.MergeJoin(from,
+                    first, KeyOrder.sort(from[first], inputRows[first],
+                                         key1, order),
+                    second, KeyOrder.sort(from[second], inputRows[second],
+                                          key2, order),
+                    key1, key2, order);
+        } else if (key1.length > 0
+                   && Operator.HashJoin.memory(inputRows[second].length)
+                      > Operator.HashJoin.MEMORY_LIMIT) {
+            kind = "Merge join after external sort";
+            plan = new Operator.MergeJoin(from,
+                    first, ExternalSort.sort(from[first], inputRows[first],
+                                             key1, ExternalSort.RUN_ROWS),
+                    second, ExternalSort.sort(from[second],
+                                              inputRows[second], key2,
+                                              ExternalSort.RUN_ROWS),
+                    key1, key2, KeyOrder.Kind.STRINGS);
+        } else if (inputRows[first].length + inputRows[second].length
+                   >= ParallelJoin.THRESHOLD) {
+            kind = "Parallel hash join";
+            int[][] pairs = ParallelJoin.join(from[first], inputRows[first],
+                    from[second], inputRows[second], key1, key2,
+                    ParallelJoin.CHUNK_ROWS);
+            plan = new Operator.Pairs(from, first, pairs[0],
+                                      second, pairs[1]);
         } else {
-            singleTableSelectCondHelper(whereColumn,
-                    tempTable,
-                    whereValue,
-                    isValueNotCol,
-                    whereCondition,
-                    returnTable,
-                    columnIndexes);
+            kind = "Hash join";
+            plan = new Operator.HashJoin(new Operator.Scan(from, first,
+                                                           inputRows[first]),
+                                         second, inputRows[second]);
+        }
+        plan = measure(plan, join);
+        if (join != null) {
+            join.describe(joinDescription(kind, from,
+                    Operator.cover(new boolean[from.length], first), second));
+        }
+        plan = filterHelper(plan, conditions, pushed);
+
+        double size = best;
+        while (true) {
+            int next = -1;
+            best = Double.MAX_VALUE;
+            for (int k = 0; k < from.length; k++) {
+                if (!plan.covered()[k]) {
+                    double estimate = joinEstimate(from, plan.covered(), size,
+                            from[k], inputRows[k].length);
+                    if (next == -1 || estimate < best) {
+                        best = estimate;
+                        next = k;
+                    }
+                }
+            }
+            if (next == -1) {
+                break;
+            }
+            boolean[] joined = plan.covered();
+            join = begin(node(plan), scans[next]);
+            plan = measure(new Operator.HashJoin(plan, next, inputRows[next]),
+                           join);
+            if (join != null) {
+                join.describe(joinDescription("Hash join", from, joined,
+                                              next));
+            }
+            plan = filterHelper(plan, conditions, pushed);
+            size = best;
         }
 
+        int[] slots = new int[columnNames.size()];
+        int[] columns = new int[columnNames.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = -1;
+            for (int k = 0; k < from.length && slots[i] == -1; k++) {
+                columns[i] = from[k].findColumn(columnNames.get(i));
+                if (columns[i] != -1) {
+                    slots[i] = k;
+                }
+            }
+            if (slots[i] == -1) {
+                throw error("invalid row or column");
+            }
+        }
+        Profile.Node project = begin(node(plan));
+        while (plan.next()) {
+            int[] tuple = plan.tuple();
+            String[] row = new String[slots.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = from[slots[i]].get(tuple[slots[i]], columns[i]);
+            }
+            returnTable.add(row);
+        }
+        if (end(project, -1, returnTable.size())) {
+            project.describe("Project " + titles(returnTable));
+            _profile.setRoot(project);
+        }
     }
 
     /**
-     * inner join table helper.
-     * @param table1 table 1 to be joined
-     * @param table2 2nd table
-     * @return
+     * adds to a pipeline a filter for the conditions that have not yet
+     * been applied and that mention only tables the pipeline covers.
+     * @param plan pipeline to extend
+     * @param conditions where conditions
+     * @param pushed true for each condition already applied, which is
+     *               skipped; set to true for each condition applied here
+     * @return plan, followed by a filter if any conditions apply
      */
-    Table tempTableHelper(Table table1, Table table2) {
-        Table tempTable;
-        String[] table1Cols = table1.getColumnNames();
-        String[] table2Cols = table2.getColumnNames();
-        HashMap<String, Boolean> tempTableCols = new HashMap<>();
-        int rowLength = 0;
-        for (String col : table1Cols) {
-            tempTableCols.put(col, true);
-            rowLength++;
-        }
-        for (String tab2Col : table2Cols) {
-            if (table1.findColumn(tab2Col) != -1) {
-                tempTableCols.put(tab2Col, false);
-            } else {
-                tempTableCols.put(tab2Col, true);
-                rowLength++;
+    Operator filterHelper(Operator plan, ArrayList<Condition> conditions,
+                          boolean[] pushed) {
+        ArrayList<Condition> bound = new ArrayList<>();
+        for (int i = 0; i < conditions.size(); i++) {
+            if (!pushed[i]
+                && conditions.get(i).appliesTo(plan.tables(),
+                                               plan.covered())) {
+                bound.add(conditions.get(i).bind(plan.tables(),
+                                                 plan.covered()));
+                pushed[i] = true;
             }
         }
-        String[] tempColNames = new String[rowLength];
-        int start = 0;
-        for (int i = 0; i < table1Cols.length; i++) {
-            tempColNames[i] = table1Cols[i];
-            start = i;
-        }
-        start += 1;
-        for (int i = 0; i < table2Cols.length; i++) {
-            if (tempTableCols.get(table2Cols[i])) {
-                tempColNames[start] = table2Cols[i];
-                start++;
+        if (bound.isEmpty()) {
+            return plan;
+        }
+        Profile.Node filter = begin(node(plan));
+        Operator result = measure(new Operator.Filter(plan, bound), filter);
+        if (filter != null) {
+            filter.describe("Filter: " + Profile.describe(bound));
+        }
+        return result;
+    }
+
+    /**
+     * describes a join for explain analyze.
+     * @param kind the kind of join
+     * @param tables tables of the from clause
+     * @param covered true for each of tables already joined
+     * @param slot position of the table joined with them
+     * @return description of the join and the columns it matches
+     */
+    private String joinDescription(String kind, Table[] tables,
+                                   boolean[] covered, int slot) {
+        ArrayList<String> common = new ArrayList<>();
+        for (int col = 0; col < tables[slot].columns(); col++) {
+            String title = tables[slot].getTitle(col);
+            for (int k = 0; k < tables.length; k++) {
+                if (covered[k] && tables[k].findColumn(title) != -1) {
+                    common.add(title);
+                    break;
+                }
             }
         }
-        tempTable = new Table(tempColNames);
-        String[] row = new String[rowLength];
+        return kind + (common.isEmpty() ? " (no common columns)"
+                       : " on " + String.join(", ", common));
+    }
 
-        addingHelper(table1,
-                table2,
-                table1Cols,
-                tempTableCols,
-                row,
-                table2Cols,
-                tempTable);
+    /**
+     * starts measuring an operator, if explaining a select.
+     * @param inputs measurements of the operator's inputs
+     * @return a new node of _profile, measuring, or null if _profile is
+     *         null
+     */
+    private Profile.Node begin(Profile.Node... inputs) {
+        return _profile == null ? null : _profile.begin(inputs);
+    }
 
-        return tempTable;
+    /**
+     * stops measuring an operator, if explaining a select.
+     * @param node node measuring the operator, or null if not explaining
+     * @param rowsIn number of rows the operator considered, or -1 for
+     *               the rows its inputs produced
+     * @param rowsOut number of rows the operator produced
+     * @return true iff node is not null
+     */
+    private static boolean end(Profile.Node node, long rowsIn,
+                               long rowsOut) {
+        if (node == null) {
+            return false;
+        }
+        node.end();
+        if (rowsIn >= 0) {
+            node.setRowsIn(rowsIn);
+        }
+        node.addRowsOut(rowsOut);
+        return true;
     }
 
     /**
-     * adding helper for mult select.
-     * @param table1 first table
-     * @param table2 second table
-     * @param table1Cols cols of tabl1
-     * @param tempTableCols joined table's cols
-     * @param row each row to be inserted
-     * @param table2Cols tabl2's cols
-     * @param tempTable returning temp table
+     * continues measuring a pipeline operator as it produces its tuples,
+     * if explaining a select.
+     * @param plan the operator
+     * @param node node measuring its construction, or null if not
+     *             explaining
+     * @return plan, wrapped to be measured by node unless node is null
      */
-    void addingHelper(Table table1,
-                      Table table2,
-                      String[] table1Cols,
-                      HashMap<String, Boolean> tempTableCols,
-                      String[] row,
-                      String[] table2Cols,
-                      Table tempTable) {
-        Boolean adding = true;
-        for (int curRow1 = 0; curRow1 < table1.size(); curRow1++) {
-            for (int curRow2 = 0; curRow2 < table2.size(); curRow2++) {
-                for (String tab1Col : table1Cols) {
-                    if (!tempTableCols.get(tab1Col)) {
-                        if (!table1.get(curRow1, table1.findColumn(tab1Col))
-                                .equals(table2.get(curRow2,
-                                        table2.findColumn(tab1Col)))) {
-                            adding = false;
-                            break;
-                        }
-                    }
-                }
-                if (adding) {
-                    int start = 0;
-                    for (int i = 0; i < table1Cols.length; i++) {
-                        row[i] = table1.get(curRow1, i);
-                        start = i;
-                    }
-                    start++;
-                    for (int i = 0; i < table2Cols.length; i++) {
-                        if (tempTableCols.get(table2Cols[i])) {
-                            row[start] = table2.get(curRow2, i);
-                            start++;
-                        }
-                    }
-                    tempTable.add(row);
+    private static Operator measure(Operator plan, Profile.Node node) {
+        if (!end(node, -1, 0)) {
+            return plan;
+        }
+        return new Operator.Measured(plan, node);
+    }
+
+    /**
+     * finds the measurements of a pipeline operator.
+     * @param plan the operator
+     * @return the node measuring plan, or null if it is not measured
+     */
+    private static Profile.Node node(Operator plan) {
+        if (plan instanceof Operator.Measured) {
+            return ((Operator.Measured) plan).node();
+        }
+        return null;
+    }
+
+    /**
+     * estimates the number of rows in the natural join of some tables
+     * already joined with another table.
+     * The estimate starts from the size of their cross product, and
+     * each column the two sides have in common divides it by the larger
+     * number of distinct values that column has on either side, which
+     * is the usual estimate for an equijoin of uniformly distributed
+     * values.
+     * @param tables tables of the from clause
+     * @param joined true for each of tables already joined
+     * @param size1 estimated number of rows in the join of those tables
+     * @param table2 table to be joined with them
+     * @param size2 number of rows of table2 that will be joined
+     * @return estimated number of rows produced
+     */
+    double joinEstimate(Table[] tables, boolean[] joined, double size1,
+                        Table table2, int size2) {
+        double estimate = size1 * size2;
+        for (int col2 = 0; col2 < table2.columns(); col2++) {
+            for (int k = 0; k < tables.length; k++) {
+                int col1 = tables[k].findColumn(table2.getTitle(col2));
+                if (joined[k] && col1 != -1) {
+                    double distinct =
+                        Math.max(Math.min(tables[k].distinctValues(col1),
+                                          size1),
+                                 Math.min(table2.distinctValues(col2),
+                                          size2));
+                    estimate /= Math.max(distinct, 1);
+                    break;
                 }
-                row = new String[row.length];
-                adding = true;
             }
         }
+        return estimate;
+    }
+
+    /**
+     * applies to a table, before it is joined, the where conditions that
+     * mention only its columns.  Since the join only pairs rows that
+     * agree on their common columns, a condition on columns that all
+     * belong to one table may be tested on that table alone, which
+     * shrinks the join's inputs instead of filtering its output.  If
+     * the table has an index that can answer one of the conditions,
+     * only the rows it finds are tested.
+     * @param table table to filter
+     * @param conditions where conditions
+     * @param pushed true for each condition already applied, which is
+     *               skipped; set to true for each condition applied here
+     * @param scan node measuring the scan, or null if not explaining
+     * @return numbers of the rows of table satisfying those conditions
+     */
+    ArrayList<Integer> pushDownHelper(Table table,
+                                      ArrayList<Condition> conditions,
+                                      boolean[] pushed, Profile.Node scan) {
+        ArrayList<Condition> local = new ArrayList<>();
+        for (int i = 0; i < conditions.size(); i++) {
+            if (!pushed[i] && conditions.get(i).appliesTo(table)) {
+                local.add(conditions.get(i).bind(table));
+                pushed[i] = true;
+            }
+        }
+
+        int[] candidates = table.lookup(local);
+        ArrayList<Integer> rows =
+            ParallelScan.filter(table, local, candidates,
+                                ParallelScan.THRESHOLD);
+        if (end(scan, candidates == null ? table.size() : candidates.length,
+                rows.size())) {
+            scan.describe(Profile.scan(_profile.name(table), local,
+                                       candidates));
+        }
+        return rows;
+    }
+
+    /**
+     * converts a list of row or column numbers to an array.
+     * @param list numbers to convert
+     * @return the numbers in list, in order
+     */
+    int[] toArray(ArrayList<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
     }
 
     /**
@@ -508,158 +907,95 @@ class CommandInterpreter {
 
     /**
      * scrapes tables from selection.
-     * @param tables table names
+     * @param tables tables named
+     * @param names their names
      */
-    void tablesHelper(ArrayList tables) {
-        tables.add(tableName());
-        while (_input.nextIf(",")) {
+    void tablesHelper(ArrayList<Table> tables, ArrayList<String> names) {
+        do {
+            names.add(_input.peek());
             tables.add(tableName());
-        }
+        } while (_input.nextIf(","));
     }
 
     /**
-     * helper for where.
-     * @param whereColumn col
-     * @param whereValue value
-     * @param whereCondition condition
-     * @param isValueNotCol if value or col
-     */
-    void whereHelper(ArrayList whereColumn,
-                     ArrayList whereValue,
-                     ArrayList whereCondition,
-                     HashMap isValueNotCol) {
-        whereColumn.add(columnName());
-        whereCondition.add(condition());
-        _input.flush();
-        if (_input.nextIf(mkPatn("'.*"))) {
-            _input.rewind();
-            String value = literal();
-            whereValue.add(value);
-            isValueNotCol.put(value, true);
-        } else {
-            _input.rewind();
-            String col = name();
-            whereValue.add(col);
-            isValueNotCol.put(col, false);
-        }
-        while (_input.nextIf("and")) {
-            whereColumn.add(columnName());
-            whereCondition.add(condition());
-            _input.flush();
-            if (_input.nextIf(mkPatn("'.*"))) {
-                _input.rewind();
-                String value = literal();
-                whereValue.add(value);
-                isValueNotCol.put(value, true);
-            } else {
-                _input.rewind();
-                String col = name();
-                whereValue.add(col);
-                isValueNotCol.put(col, false);
-            }
-        }
-    }
-
-    /**
-     * helper for no conditions select.
+     * helper for no conditions select.  Large tables are scanned in
+     * parallel (see ParallelScan).
      * @param currentTable table selecting from
      * @param columnIndexes columns selecting
      * @param returnTable table adding
      */
     void noCondSelectHelper(Table currentTable,
-                            ArrayList columnIndexes,
+                            ArrayList<Integer> columnIndexes,
                             Table returnTable) {
-        String[] row = new String[columnIndexes.size()];
-        for (int curRow = 0; curRow < currentTable.size(); curRow++) {
-            for (int i = 0; i < row.length; i++) {
-                row[i] = currentTable.get(curRow, (int) columnIndexes.get(i));
+        singleTableSelectCondHelper(new ArrayList<>(), currentTable,
+                                    returnTable, columnIndexes);
+    }
+
+    /**
+     * converts column numbers found by findColumn to an array, checking
+     * that each names a column.
+     * @param table table the columns belong to
+     * @param columnIndexes column numbers, or -1 for unknown columns
+     * @return the column numbers
+     */
+    int[] columnNumbers(Table table, ArrayList<Integer> columnIndexes) {
+        int[] columns = new int[columnIndexes.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = columnIndexes.get(i);
+            if (columns[i] == -1) {
+                throw error("invalid row or column");
             }
-            returnTable.add(row);
-            row = new String[columnIndexes.size()];
         }
+        return columns;
     }
 
     /**
-     * helper for single table selects.
-     * @param whereColumn col
+     * helper for single table selects.  If the table has an index that
+     * can answer one of the conditions, only the rows it finds are
+     * tested.  Large scans are done in parallel (see ParallelScan),
+     * which tests and projects each row in one pass, so that explain
+     * analyze charges the projection's work to the scan.
+     * @param conditions where conditions
      * @param currentTable table
-     * @param whereValue value
-     * @param isValueNotCol if value or col
-     * @param whereCondition cond
      * @param returnTable adding table
      * @param columnIndexes indexes to add
      */
-    void singleTableSelectCondHelper(ArrayList<String> whereColumn,
+    void singleTableSelectCondHelper(ArrayList<Condition> conditions,
                                      Table currentTable,
-                                     ArrayList<String> whereValue,
-                                     HashMap<String, Boolean> isValueNotCol,
-                                     ArrayList<String> whereCondition,
                                      Table returnTable,
                                      ArrayList<Integer> columnIndexes) {
-        String[] row = new String[columnIndexes.size()];
-        ArrayList<Integer> whereColumnIndexes = new ArrayList<>();
-        for (String name : whereColumn) {
-            whereColumnIndexes.add(currentTable.findColumn(name));
-        }
-        Boolean adding = true;
-        String currWhereItem;
-        for (int curRow = 0; curRow < currentTable.size(); curRow++) {
-            for (int i = 0; i < whereColumnIndexes.size(); i++) {
-                currWhereItem = currentTable.get(curRow,
-                        whereColumnIndexes.get(i));
-                if (isValueNotCol.get(whereValue.get(i))) {
-                    if (!conditionTrue(currWhereItem,
-                            whereValue.get(i),
-                            whereCondition.get(i))) {
-                        adding = false;
-                        break;
-                    }
-                } else {
-                    String colItem = currentTable.get(curRow,
-                            currentTable.findColumn(whereValue.get(i)));
-                    if (!conditionTrue(currWhereItem,
-                            colItem,
-                            whereCondition.get(i))) {
-                        adding = false;
-                        break;
-                    }
-                }
-            }
-            if (adding) {
-                for (int i = 0; i < row.length; i++) {
-                    row[i] = currentTable.get(curRow, columnIndexes.get(i));
-                }
-                returnTable.add(row);
-                row = new String[columnIndexes.size()];
-            }
-            adding = true;
+        Profile.Node scan = begin();
+        ArrayList<Condition> bound = new ArrayList<>();
+        for (Condition cond : conditions) {
+            bound.add(cond.bind(currentTable));
+        }
+        int[] candidates = currentTable.lookup(bound);
+        int matched =
+            ParallelScan.select(currentTable, bound, candidates,
+                                columnNumbers(currentTable, columnIndexes),
+                                returnTable, ParallelScan.THRESHOLD);
+        if (end(scan, candidates == null ? currentTable.size()
+                : candidates.length, matched)) {
+            scan.describe(Profile.scan(_profile.name(currentTable), bound,
+                                       candidates));
+            Profile.Node project = begin(scan);
+            end(project, -1, returnTable.size());
+            project.describe("Project " + titles(returnTable));
+            _profile.setRoot(project);
         }
     }
 
     /**
-     * returns condition relation.
-     * @param a string
-     * @param b string
-     * @param condition condition
-     * @return bool if condition holds
+     * lists the column titles of a table.
+     * @param table the table
+     * @return its column titles, separated by commas
      */
-    public Boolean conditionTrue(String a, String b, String condition) {
-
-        a = a.trim();
-        b = b.trim();
-        int comparison = a.compareTo(b);
-        return ((comparison == 0
-                && (condition.equals("=")
-                || condition.equals(">=")
-                || condition.equals("<=")))
-                || (comparison > 0
-                && (condition.equals(">")
-                || condition.equals(">=")
-                || condition.equals("!=")))
-                || (comparison < 0
-                && (condition.equals("<")
-                || condition.equals("<=")
-                || condition.equals("!="))));
+    private String titles(Table table) {
+        String[] titles = new String[table.columns()];
+        for (int col = 0; col < titles.length; col++) {
+            titles[col] = table.getTitle(col);
+        }
+        return String.join(", ", titles);
     }
 
     /** Parse and return a valid name (identifier) from the token stream. */
@@ -667,8 +1003,8 @@ class CommandInterpreter {
         return _input.next(Tokenizer.IDENTIFIER);
     }
 
-    /** Parse and return a condition. */
-    String condition() {
+    /** Parse and return a relation. */
+    String relation() {
         return _input.next(Tokenizer.RELATION);
     }
 
@@ -697,17 +1033,36 @@ class CommandInterpreter {
         return lit.substring(1, lit.length() - 1).trim();
     }
 
-    /** Parse and return a list of Conditions that apply to TABLES from the
-     *  token stream.  This denotes the conjunction (`and') of zero
-     *  or more Conditions. */
-    ArrayList<Condition> conditionClause(Table... tables) {
-        return null;
+    /** Parse a list of conditions that apply to TABLES from the token
+     *  stream, adding them to QUERY.  This denotes the conjunction
+     *  (`and') of zero or more conditions. */
+    void conditionClause(Query query, Table... tables) {
+        condition(query, tables);
+        while (_input.nextIf("and")) {
+            condition(query, tables);
+        }
     }
 
-    /** Parse and return a Condition that applies to TABLES from the
-     *  token stream. */
-    Condition condition(Table... tables) {
-        return null;
+    /** Parse a condition that applies to TABLES from the token stream,
+     *  adding it to QUERY, with a parameter in place of its literal or
+     *  "?", if it has one. */
+    void condition(Query query, Table... tables) {
+        Column col1 = new Column(columnName(), tables);
+        String relation = relation();
+        if (_input.nextIf(Tokenizer.LITERAL) || _input.nextIf("?")) {
+            query.addCondition(col1, relation);
+        } else {
+            query.addCondition(col1, relation,
+                               new Column(columnName(), tables));
+        }
+    }
+
+    /** Discard the tokens read so far, as statement() does before each
+     *  statement.  Callers that parse clauses themselves, rather than
+     *  through statement(), should call this between clauses, since the
+     *  tokens are otherwise kept so that the input can be reset. */
+    void flushInput() {
+        _input.flush();
     }
 
     /** Advance the input past the next semicolon. */
@@ -728,4 +1083,8 @@ class CommandInterpreter {
     private Tokenizer _input;
     /** Database containing all tables. */
     private Database _database;
+    /** Where results are written. */
+    private final PrintWriter _output;
+    /** Measurements of the select being explained, or null. */
+    private Profile _profile;
 }
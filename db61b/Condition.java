@@ -10,8 +10,25 @@
 package db61b;
 
 import java.util.List;
+import java.util.regex.Pattern;
+
+import static db61b.Utils.*;
 
 /** Represents a single 'where' condition in a 'select' command.
+ *  A Condition is parsed once per statement, at which time its
+ *  relation is resolved to a Relation and its literal operand, if
+ *  any, is trimmed.  Before it is tested against the rows of a
+ *  particular table, it is compiled for that table by bind, which
+ *  resolves its column names to column numbers (or, for the tuples of
+ *  rows flowing through a join, to table positions and column
+ *  numbers), so that testing a row involves no name lookups and
+ *  allocates nothing.  If the condition
+ *  compares a dictionary-encoded column with a literal, bind goes
+ *  further and works out the outcome for each distinct value in the
+ *  column, leaving just an array lookup per row.  If the columns it
+ *  compares are numeric (see ValueList.Type), or it compares a numeric
+ *  column with a literal number, it compares numbers rather than
+ *  strings.
  *  @author throwing away */
 class Condition {
 
@@ -19,7 +36,10 @@ class Condition {
      *  are column designators. and RELATION is one of the
      *  strings "<", ">", "<=", ">=", "=", or "!=". */
     Condition(Column col1, String relation, Column col2) {
-        /* YOUR CODE HERE */
+        _col1 = col1;
+        _col2 = col2;
+        _relation = Relation.of(relation);
+        _index1 = _index2 = -1;
     }
 
     /** A Condition representing COL1 RELATION 'VAL2', where COL1 is
@@ -29,15 +49,158 @@ class Condition {
      */
     Condition(Column col1, String relation, String val2) {
         this(col1, relation, (Column) null);
-        _val2 = val2;
+        _val2 = val2.trim();
+    }
+
+    /** A copy of CONDITION compiled for tuples of rows of TABLES, in
+     *  which its first column is column INDEX1 of the table in position
+     *  SLOT1, and its second (if any) is column INDEX2 of the table in
+     *  position SLOT2. */
+    private Condition(Condition condition, Table[] tables,
+                      int slot1, int index1, int slot2, int index2) {
+        _col1 = condition._col1;
+        _col2 = condition._col2;
+        _val2 = condition._val2;
+        _relation = condition._relation;
+        _slot1 = slot1;
+        _slot2 = slot2;
+        _index1 = index1;
+        _index2 = index2;
+        _values1 = tables[slot1].column(_index1);
+        ValueList.Type type1 = _values1.type();
+        if (_col2 != null) {
+            _values2 = tables[slot2].column(_index2);
+            ValueList.Type type2 = _values2.type();
+            _numeric = type1.numeric() && type2.numeric();
+            _integral = type1 != ValueList.Type.DOUBLE
+                && type2 != ValueList.Type.DOUBLE;
+        } else if (type1.numeric() && NUMBER.matcher(_val2).matches()) {
+            _numeric = true;
+            _double2 = Double.parseDouble(_val2);
+            if (type1 != ValueList.Type.DOUBLE
+                && INTEGER.matcher(_val2).matches()) {
+                try {
+                    _long2 = Long.parseLong(_val2);
+                    _integral = true;
+                } catch (NumberFormatException e) {
+                    /* Too long for a long, so compare doubles. */
+                }
+            }
+        }
+        _holds = new boolean[] {
+            _relation.holds(-1), _relation.holds(0), _relation.holds(1)
+        };
+        if (_col2 == null && _values1.encoded()) {
+            _outcomes = new boolean[_values1.dictionarySize()];
+            for (int c = 0; c < _outcomes.length; c += 1) {
+                String val1 = _values1.valueOf(c);
+                int comparison;
+                if (!_numeric) {
+                    comparison = compareTrimmed(val1, _val2);
+                } else if (_integral) {
+                    comparison = Long.compare(Long.parseLong(val1), _long2);
+                } else {
+                    comparison =
+                        Double.compare(Double.parseDouble(val1), _double2);
+                }
+                _outcomes[c] = _relation.holds(comparison);
+            }
+        }
+    }
+
+    /** Return true iff every column I mention is a column of TABLE. */
+    boolean appliesTo(Table table) {
+        return table.findColumn(_col1.getName()) != -1
+            && (_col2 == null || table.findColumn(_col2.getName()) != -1);
+    }
+
+    /** Return a copy of me that tests rows of TABLE with test(int).
+     *  I must apply to TABLE. */
+    Condition bind(Table table) {
+        if (!appliesTo(table)) {
+            throw error("condition does not apply to table");
+        }
+        return new Condition(this, new Table[] { table },
+                             0, table.findColumn(_col1.getName()),
+                             0, _col2 == null ? -1
+                             : table.findColumn(_col2.getName()));
+    }
+
+    /** Return the position of the first table in TABLES for which
+     *  COVERED is true and which has a column named NAME, or -1 if
+     *  there is none. */
+    private static int slot(String name, Table[] tables,
+                            boolean[] covered) {
+        for (int k = 0; k < tables.length; k += 1) {
+            if (covered[k] && tables[k].findColumn(name) != -1) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Return true iff every column I mention is a column of one of
+     *  the TABLES for which COVERED is true. */
+    boolean appliesTo(Table[] tables, boolean[] covered) {
+        return slot(_col1.getName(), tables, covered) != -1
+            && (_col2 == null
+                || slot(_col2.getName(), tables, covered) != -1);
+    }
+
+    /** Return a copy of me that tests tuples of rows of TABLES with
+     *  test(int[]), taking each column from the first of the TABLES for
+     *  which COVERED is true that has it.  I must apply to those
+     *  tables. */
+    Condition bind(Table[] tables, boolean[] covered) {
+        if (!appliesTo(tables, covered)) {
+            throw error("condition does not apply to table");
+        }
+        int slot1 = slot(_col1.getName(), tables, covered);
+        int slot2 =
+            _col2 == null ? 0 : slot(_col2.getName(), tables, covered);
+        return new Condition(this, tables,
+                             slot1, tables[slot1].findColumn(_col1.getName()),
+                             slot2, _col2 == null ? -1
+                             : tables[slot2].findColumn(_col2.getName()));
     }
 
     /** Assuming that ROWS are row indices in the respective tables
      *  from which my columns are selected, returns the result of
      *  performing the test I denote. */
     boolean test(Integer... rows) {
-        /* REPLACE WITH SOLUTION */
-        return false;
+        String val2 = _col2 == null ? _val2 : _col2.getFrom(rows);
+        return _relation.holds(compareTrimmed(_col1.getFrom(rows), val2));
+    }
+
+    /** Returns the result of performing the test I denote on row ROW of
+     *  the table I was bound to. */
+    boolean test(int row) {
+        return test(row, row);
+    }
+
+    /** Returns the result of performing the test I denote on the tuple
+     *  ROWS, whose kth element is a row number of the kth of the tables
+     *  I was bound to. */
+    boolean test(int[] rows) {
+        return test(rows[_slot1], rows[_slot2]);
+    }
+
+    /** Returns the result of performing the test I denote, taking my
+     *  first operand from row ROW1 and my second (if a column) from row
+     *  ROW2 of their tables. */
+    private boolean test(int row1, int row2) {
+        if (_outcomes != null) {
+            int code = _values1.code(row1);
+            if (code < _outcomes.length) {
+                return _outcomes[code];
+            }
+        }
+        if (_numeric) {
+            return _relation.holds(compareNumbers(row1, row2));
+        }
+        String val1 = _values1.get(row1);
+        String val2 = _values2 == null ? _val2 : _values2.get(row2);
+        return _relation.holds(compareTrimmed(val1, val2));
     }
 
     /** Return true iff ROWS satisfies all CONDITIONS. */
@@ -50,10 +213,273 @@ class Condition {
         return true;
     }
 
+    /** Remove from BATCH, whose rows come from the single table I was
+     *  bound to, the rows that do not satisfy me, keeping the rest in order,
+     *  and return how many remain.  Each case below is a loop over
+     *  arrays filled a batch at a time; a row is kept by always storing
+     *  it at the end of the survivors and only counting it if it
+     *  passes, which avoids an unpredictable branch per row. */
+    int filter(Batch batch) {
+        int[] rows = batch._rows;
+        int n = batch._size;
+        int m = 0;
+        if (_outcomes != null) {
+            int[] codes = batch._codes;
+            _values1.codes(rows, n, codes);
+            for (int i = 0; i < n; i += 1) {
+                int code = codes[i];
+                boolean keep = code < _outcomes.length
+                    ? _outcomes[code] : test(rows[i]);
+                rows[m] = rows[i];
+                m += keep ? 1 : 0;
+            }
+        } else if (_numeric && _integral) {
+            long[] longs1 = batch._longs1, longs2 = batch._longs2;
+            _values1.longValues(rows, n, longs1);
+            if (_values2 != null) {
+                _values2.longValues(rows, n, longs2);
+            }
+            for (int i = 0; i < n; i += 1) {
+                long val2 = _values2 == null ? _long2 : longs2[i];
+                rows[m] = rows[i];
+                int sign = Integer.signum(Long.compare(longs1[i], val2));
+                m += _holds[sign + 1] ? 1 : 0;
+            }
+        } else if (_numeric) {
+            double[] doubles1 = batch._doubles1, doubles2 = batch._doubles2;
+            _values1.doubleValues(rows, n, doubles1);
+            if (_values2 != null) {
+                _values2.doubleValues(rows, n, doubles2);
+            }
+            for (int i = 0; i < n; i += 1) {
+                double val2 = _values2 == null ? _double2 : doubles2[i];
+                rows[m] = rows[i];
+                int sign =
+                    Integer.signum(Double.compare(doubles1[i], val2));
+                m += _holds[sign + 1] ? 1 : 0;
+            }
+        } else {
+            for (int i = 0; i < n; i += 1) {
+                boolean keep = test(rows[i]);
+                rows[m] = rows[i];
+                m += keep ? 1 : 0;
+            }
+        }
+        return m;
+    }
+
+    /** Return true iff the tuple ROWS satisfies all CONDITIONS, which
+     *  must all be bound to the same tables (see test(int[])). */
+    static boolean test(List<Condition> conditions, int[] rows) {
+        for (int i = 0; i < conditions.size(); i += 1) {
+            if (!conditions.get(i).test(rows)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff row ROW satisfies all CONDITIONS, which must all
+     *  be bound to the same table. */
+    static boolean test(List<Condition> conditions, int row) {
+        for (int i = 0; i < conditions.size(); i += 1) {
+            if (!conditions.get(i).test(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the number of the column of the table I was bound to that
+     *  I compare with a literal, or -1 if I compare two columns. */
+    int literalColumn() {
+        return _col2 == null ? _index1 : -1;
+    }
+
+    /** Return my literal operand (trimmed), or null if I have none. */
+    String literal() {
+        return _val2;
+    }
+
+    /** Return true iff I was bound to compare numbers. */
+    boolean numeric() {
+        return _numeric;
+    }
+
+    /** Return true iff my relation is '='. */
+    boolean equality() {
+        return _relation == Relation.EQ;
+    }
+
+    /** Return true iff a comparison of my operands whose result was
+     *  COMPARISON (<0, 0, or >0) satisfies me. */
+    boolean holds(int comparison) {
+        return _relation.holds(comparison);
+    }
+
+    /** Return <0, 0, or >0 as the value of my first operand in row ROW
+     *  of the table I was bound to is less than, equal to, or greater
+     *  than my literal operand, compared as in test(int). */
+    int compareLiteral(int row) {
+        if (_numeric) {
+            return compareNumbers(row, row);
+        }
+        return compareTrimmed(_values1.get(row), _val2);
+    }
+
+    /** Return <0, 0, or >0 as my first operand, taken from row ROW1, is
+     *  numerically less than, equal to, or greater than my second, taken
+     *  (if a column) from row ROW2. */
+    private int compareNumbers(int row1, int row2) {
+        if (_integral) {
+            long val2 =
+                _values2 == null ? _long2 : _values2.longValue(row2);
+            return Long.compare(_values1.longValue(row1), val2);
+        } else {
+            double val2 =
+                _values2 == null ? _double2 : _values2.doubleValue(row2);
+            return Double.compare(_values1.doubleValue(row1), val2);
+        }
+    }
+
+    /** Return <0, 0, or >0 as A.trim() is less than, equal to, or
+     *  greater than B.trim(), without creating the trimmed strings. */
+    static int compareTrimmed(String a, String b) {
+        int start1 = 0, end1 = a.length();
+        while (start1 < end1 && a.charAt(start1) <= ' ') {
+            start1 += 1;
+        }
+        while (end1 > start1 && a.charAt(end1 - 1) <= ' ') {
+            end1 -= 1;
+        }
+        int start2 = 0, end2 = b.length();
+        while (start2 < end2 && b.charAt(start2) <= ' ') {
+            start2 += 1;
+        }
+        while (end2 > start2 && b.charAt(end2 - 1) <= ' ') {
+            end2 -= 1;
+        }
+        int len1 = end1 - start1, len2 = end2 - start2;
+        int n = Math.min(len1, len2);
+        for (int k = 0; k < n; k += 1) {
+            int c = a.charAt(start1 + k) - b.charAt(start2 + k);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return len1 - len2;
+    }
+
+    @Override
+    public String toString() {
+        return _col1.getName() + " " + _relation._symbol + " "
+            + (_col2 == null ? "'" + _val2 + "'" : _col2.getName());
+    }
+
+    /** The relations that may appear in a Condition, each of which
+     *  knows which results of a comparison satisfy it. */
+    private enum Relation {
+        /** Less than. */
+        LT("<") {
+            @Override
+            boolean holds(int comparison) {
+                return comparison < 0;
+            }
+        },
+        /** Less than or equal. */
+        LE("<=") {
+            @Override
+            boolean holds(int comparison) {
+                return comparison <= 0;
+            }
+        },
+        /** Equal. */
+        EQ("=") {
+            @Override
+            boolean holds(int comparison) {
+                return comparison == 0;
+            }
+        },
+        /** Not equal. */
+        NE("!=") {
+            @Override
+            boolean holds(int comparison) {
+                return comparison != 0;
+            }
+        },
+        /** Greater than or equal. */
+        GE(">=") {
+            @Override
+            boolean holds(int comparison) {
+                return comparison >= 0;
+            }
+        },
+        /** Greater than. */
+        GT(">") {
+            @Override
+            boolean holds(int comparison) {
+                return comparison > 0;
+            }
+        };
+
+        /** A Relation denoted by SYMBOL. */
+        Relation(String symbol) {
+            _symbol = symbol;
+        }
+
+        /** Return true iff a comparison whose result was COMPARISON
+         *  (<0, 0, or >0) satisfies me. */
+        abstract boolean holds(int comparison);
+
+        /** Return the Relation denoted by SYMBOL. */
+        static Relation of(String symbol) {
+            for (Relation relation : values()) {
+                if (relation._symbol.equals(symbol)) {
+                    return relation;
+                }
+            }
+            throw error("unknown relation: %s", symbol);
+        }
+
+        /** My textual form. */
+        private final String _symbol;
+    }
+
     /** The operands of this condition.  _col2 is null if the second operand
      *  is a literal. */
     private Column _col1, _col2;
     /** Second operand, if literal (otherwise null). */
     private String _val2;
-    /* ADD ADDITIONAL FIELDS HERE */
+    /** My relation. */
+    private final Relation _relation;
+    /** If I have been bound, the positions among the tables I was bound
+     *  to of the tables holding _col1 and _col2 (0 if _col2 is null). */
+    private int _slot1, _slot2;
+    /** Numbers in their tables of the columns _col1 and _col2, or -1. */
+    private final int _index1, _index2;
+    /** If I have been bound, the columns _col1 and _col2 (_values2 is
+     *  null if _col2 is). */
+    private ValueList _values1, _values2;
+    /** If I compare a dictionary-encoded column with a literal, my
+     *  outcome for each value in its dictionary when I was bound,
+     *  indexed by code, and otherwise null. */
+    private boolean[] _outcomes;
+    /** If I have been bound, whether I hold when a comparison of my
+     *  operands yields a negative number, 0, and a positive number,
+     *  indexed by its signum plus 1. */
+    private boolean[] _holds;
+    /** True iff I was bound to compare numbers, in which case _integral
+     *  is true iff I compare them as longs rather than doubles. */
+    private boolean _numeric, _integral;
+    /** My literal operand as a long (if _integral) or double (if
+     *  _numeric). */
+    private long _long2;
+    /** See _long2. */
+    private double _double2;
+
+    /** Literals that are compared numerically with numeric columns. */
+    private static final Pattern NUMBER =
+        Pattern.compile("-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?|NaN|-?Infinity");
+    /** Literals that may be compared as longs. */
+    private static final Pattern INTEGER = Pattern.compile("-?\\d+");
 }
@@ -0,0 +1,64 @@
+package db61b;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConditionTest {
+
+    Table table = new Table(new String[] {"a", "b"});
+
+    @Test
+    public void testLiteral() {
+        table.add(new String[] {"10", "2"});
+        table.add(new String[] {" 9", "9 "});
+        Column a = new Column("a", table);
+        Condition lt = new Condition(a, "<", "9").bind(table);
+        Condition eq = new Condition(a, "=", " 9 ").bind(table);
+        assertTrue(lt.test(0));
+        assertFalse(lt.test(1));
+        assertFalse(eq.test(0));
+        assertTrue(eq.test(1));
+    }
+
+    @Test
+    public void testColumns() {
+        table.add(new String[] {"10", "2"});
+        table.add(new String[] {" 9", "9 "});
+        Condition ne = new Condition(new Column("a", table), "!=",
+                                     new Column("b", table)).bind(table);
+        assertTrue(ne.test(0));
+        assertFalse(ne.test(1));
+        assertTrue(ne.test(0));
+    }
+
+    @Test
+    public void testNumeric() {
+        table.add(new String[] {"10", "2.5"});
+        table.add(new String[] {"9", "-1.0E10"});
+        Column a = new Column("a", table);
+        Column b = new Column("b", table);
+        Condition gt = new Condition(a, ">", "9").bind(table);
+        Condition le = new Condition(b, "<=", "2.50").bind(table);
+        Condition lt = new Condition(b, "<", a).bind(table);
+        assertTrue(gt.test(0));
+        assertFalse(gt.test(1));
+        assertTrue(le.test(0));
+        assertTrue(le.test(1));
+        assertTrue(lt.test(0));
+        assertTrue(lt.test(1));
+        table.add(new String[] {"x", "3"});
+        gt = new Condition(a, ">", "9").bind(table);
+        assertFalse(gt.test(0));
+        assertTrue(gt.test(2));
+    }
+
+    @Test
+    public void testCompareTrimmed() {
+        assertEquals(0, Condition.compareTrimmed("  ab ", "ab"));
+        assertTrue(Condition.compareTrimmed("ab", "abc") < 0);
+        assertTrue(Condition.compareTrimmed(" b", "abc") > 0);
+        assertEquals(0, Condition.compareTrimmed("   ", ""));
+    }
+}
@@ -0,0 +1,74 @@
+package db61b;
+
+import static db61b.Utils.*;
+
+/** The rows resulting from the execution of a PreparedStatement, taken
+ *  one at a time, in the order in which a select statement would print
+ *  them.  A Cursor is positioned before its first row until the first
+ *  call to next().
+ *  @author andrew */
+public class Cursor {
+
+    /** A Cursor over the rows of TABLE. */
+    Cursor(Table table) {
+        _table = table;
+        _rows = table.index();
+        _next = 0;
+    }
+
+    /** Advance to my next row, returning false if there are no more. */
+    public boolean next() {
+        if (_next == _rows.length) {
+            _row = -1;
+            return false;
+        }
+        _row = _rows[_next];
+        _next += 1;
+        return true;
+    }
+
+    /** Return the number of my rows. */
+    public int rows() {
+        return _rows.length;
+    }
+
+    /** Return the number of columns in my rows. */
+    public int columns() {
+        return _table.columns();
+    }
+
+    /** Return the title of column K of my rows, numbering from 0. */
+    public String getTitle(int k) {
+        return _table.getTitle(k);
+    }
+
+    /** Return the value in column K (numbering from 0) of my current
+     *  row. */
+    public String get(int k) {
+        if (_row == -1) {
+            throw error("no current row");
+        }
+        if (k < 0 || k >= _table.columns()) {
+            throw error("no column %d", k);
+        }
+        return _table.get(_row, k);
+    }
+
+    /** Return the value in the column titled TITLE of my current row. */
+    public String get(String title) {
+        int k = _table.findColumn(title);
+        if (k == -1) {
+            throw error("unknown column: %s", title);
+        }
+        return get(k);
+    }
+
+    /** The table of my rows. */
+    private final Table _table;
+    /** The numbers of the rows of _table, in order. */
+    private final int[] _rows;
+    /** Position in _rows of my next row. */
+    private int _next;
+    /** The number of my current row in _table, or -1 if none. */
+    private int _row = -1;
+}
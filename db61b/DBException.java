@@ -2,13 +2,21 @@ package db61b;
 
 /** Indicates some kind of user error.
  *  @author P. N. Hilfinger */
-class DBException extends RuntimeException {
-    /** A new exception without message. */
-    public DBException() {
+public class DBException extends RuntimeException {
+    /** A new exception without message.  This constructor is not public:
+     *  a ForkJoinTask rethrowing an exception from another thread
+     *  copies it with a public no-argument constructor if there is one,
+     *  which would lose the message. */
+    DBException() {
     }
 
     /** A new exception with message MSG. */
     public DBException(String msg) {
         super(msg);
     }
+
+    /** A new exception with message MSG, caused by CAUSE. */
+    public DBException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
 }
@@ -12,9 +12,13 @@ package db61b;
 /* FILL IN (WITH IMPORTS)? */
 import java.util.HashMap;
 
-/** A collection of Tables, indexed by name.
+/** A collection of Tables, indexed by name.  Besides serving the
+ *  CommandInterpreter, a Database may be embedded in another program,
+ *  which loads tables into it and runs select clauses on them through
+ *  PreparedStatements.  Such a program sees only the public members;
+ *  the Tables themselves are internal to this package.
  *  @author andrew */
-class Database {
+public class Database {
     /** An empty database. */
     public Database() {
         /*// FILL IN*/
@@ -23,7 +27,7 @@ class Database {
 
     /** Return the Table whose name is NAME stored in this database, or null
      *  if there is no such table. */
-    public Table get(String name) {
+    Table get(String name) {
         if (_database.containsKey(name)) {
             return (Table) _database.get(name);
         } else {
@@ -34,15 +38,38 @@ class Database {
 
     /** Set or replace the table named NAME in THIS to TABLE.  TABLE and
      *  NAME must not be null, and NAME must be a valid name for a table. */
-    public void put(String name, Table table) {
+    void put(String name, Table table) {
         if (name == null || table == null) {
             throw new IllegalArgumentException("null argument");
         }
 
-        _database.put(name, table);
+        Object old = _database.put(name, table);
+        if (old != null && old != table) {
+            _plans.invalidate(name);
+        }
+    }
+
+    /** Load the table stored in the file NAME.db into THIS as the table
+     *  named NAME, replacing any table of that name. */
+    public void load(String name) {
+        put(name, Table.readTable(name));
+    }
+
+    /** Return a PreparedStatement for the select clause SELECT (with or
+     *  without its final semicolon) on the tables in THIS, in which "?"
+     *  may appear in place of any literal. */
+    public PreparedStatement prepare(String select) {
+        return new PreparedStatement(this, select);
+    }
+
+    /** Return the cache of the select clauses executed on THIS. */
+    PlanCache plans() {
+        return _plans;
     }
 
     /*// FILL IN?*/
     /**Database instance. */
     private HashMap _database;
+    /** Queries that select from my tables. */
+    private final PlanCache _plans = new PlanCache(PlanCache.CAPACITY);
 }
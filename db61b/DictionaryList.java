@@ -0,0 +1,166 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** A dictionary-encoded ValueList.  Each distinct value is stored once,
+ *  in a dictionary, and each row holds just the int code of its value.
+ *  Columns with few distinct values (such as a grade or a semester)
+ *  thus take about four bytes per row, and tests of their values can
+ *  often be made once per distinct value rather than once per row.
+ *  While all of the values are numbers, their numeric values are also
+ *  kept, by code, so that longValue and doubleValue need not parse.
+ *  @author andrew */
+class DictionaryList extends ValueList {
+
+    /** Return a DictionaryList holding the same values as COLUMN. */
+    static DictionaryList copyOf(ValueList column) {
+        DictionaryList result = new DictionaryList();
+        for (int row = 0; row < column.size(); row += 1) {
+            result.add(column.get(row));
+        }
+        return result;
+    }
+
+    @Override
+    int size() {
+        return _size;
+    }
+
+    @Override
+    String get(int row) {
+        return _values.get(code(row));
+    }
+
+    @Override
+    void add(String value) {
+        Integer code = _numbers.get(value);
+        if (code == null) {
+            code = _values.size();
+            _values.add(value);
+            _numbers.put(value, code);
+            addNumber(code, value);
+        }
+        if (_size == _codes.length) {
+            _codes = Arrays.copyOf(_codes, 2 * _size);
+        }
+        _codes[_size] = code;
+        _size += 1;
+    }
+
+    @Override
+    int distinctValues() {
+        return _values.size();
+    }
+
+    @Override
+    Type type() {
+        return _type;
+    }
+
+    @Override
+    long longValue(int row) {
+        return _longs[code(row)];
+    }
+
+    @Override
+    double doubleValue(int row) {
+        return _doubles[code(row)];
+    }
+
+    @Override
+    boolean encoded() {
+        return true;
+    }
+
+    @Override
+    int code(int row) {
+        if (row < 0 || row >= _size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return _codes[row];
+    }
+
+    @Override
+    int codeOf(String value) {
+        Integer code = _numbers.get(value);
+        return code == null ? -1 : code;
+    }
+
+    @Override
+    int dictionarySize() {
+        return _values.size();
+    }
+
+    @Override
+    String valueOf(int code) {
+        return _values.get(code);
+    }
+
+    @Override
+    void values(int[] rows, int n, String[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = _values.get(_codes[rows[i]]);
+        }
+    }
+
+    @Override
+    void codes(int[] rows, int n, int[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = _codes[rows[i]];
+        }
+    }
+
+    @Override
+    void longValues(int[] rows, int n, long[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = _longs[_codes[rows[i]]];
+        }
+    }
+
+    @Override
+    void doubleValues(int[] rows, int n, double[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = _doubles[_codes[rows[i]]];
+        }
+    }
+
+    /** Record the numeric value of VALUE, whose code is CODE, and widen
+     *  _type as needed. */
+    private void addNumber(int code, String value) {
+        if (_type == Type.STRING) {
+            return;
+        }
+        _type = _type.widen(Type.of(value));
+        if (_type == Type.STRING) {
+            _longs = null;
+            _doubles = null;
+            return;
+        }
+        if (code == _doubles.length) {
+            _doubles = Arrays.copyOf(_doubles, 2 * code);
+            _longs = Arrays.copyOf(_longs, 2 * code);
+        }
+        _doubles[code] = Double.parseDouble(value);
+        if (_type != Type.DOUBLE) {
+            _longs[code] = Long.parseLong(value);
+        }
+    }
+
+    /** Codes of my rows' values.  Only the first _size are in use. */
+    private int[] _codes = new int[16];
+    /** Number of rows. */
+    private int _size;
+    /** My dictionary: the value whose code is k is _values.get(k). */
+    private final ArrayList<String> _values = new ArrayList<>();
+    /** Inverse of _values. */
+    private final HashMap<String, Integer> _numbers = new HashMap<>();
+    /** Narrowest type holding all of _values. */
+    private Type _type = Type.INT;
+    /** While _type is numeric, the numeric values of _values, by code.
+     *  _longs is valid only while _type is INT or LONG. */
+    private long[] _longs = new long[16];
+    /** See _longs. */
+    private double[] _doubles = new double[16];
+}
@@ -0,0 +1,185 @@
+package db61b;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import static db61b.Utils.*;
+
+/** Sorts rows of a table on a key in bounded memory, for a merge join
+ *  of inputs that are not already in order (see KeyOrder) when a hash
+ *  join would need more memory than it may use.  The rows are divided
+ *  into runs of a limited number of rows.  Each run is sorted in memory
+ *  and written, with the keys of its rows, to a temporary file, and the
+ *  runs are then merged, reading all the files at once a row at a time,
+ *  so that no more than one run's rows and keys are held in memory at
+ *  once.  (The result, an array of row numbers, takes four bytes a
+ *  row.)  A sort of no more than one run's rows is done in memory.
+ *  The order is KeyOrder.Kind.STRINGS.
+ *  @author andrew */
+class ExternalSort {
+
+    /** Default number of rows in each run.  It may be set with the
+     *  system property db61b.sortRunRows. */
+    static final int RUN_ROWS =
+        Integer.getInteger("db61b.sortRunRows", 1 << 18);
+
+    /** Return ROWS, which are rows of TABLE, sorted lexicographically on
+     *  the key made of COLUMNS, sorting runs of RUNROWS rows at a time.
+     *  Any I/O errors cause a DBException. */
+    static int[] sort(Table table, int[] rows, int[] columns, int runRows) {
+        if (rows.length <= runRows) {
+            return sortRun(table, rows, 0, rows.length, columns);
+        }
+        ArrayList<File> files = new ArrayList<>();
+        try {
+            for (int start = 0; start < rows.length; start += runRows) {
+                int end = Math.min(start + runRows, rows.length);
+                File file = File.createTempFile("db61b", ".run");
+                files.add(file);
+                writeRun(table, sortRun(table, rows, start, end, columns),
+                         columns, file);
+            }
+            return merge(files, rows.length, columns.length, runRows);
+        } catch (IOException e) {
+            throw error("trouble sorting: %s", e.getMessage());
+        } finally {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Return ROWS[START .. END - 1], which are rows of TABLE, sorted on
+     *  the key made of COLUMNS. */
+    private static int[] sortRun(Table table, int[] rows, int start,
+                                 int end, int[] columns) {
+        Integer[] run = new Integer[end - start];
+        for (int i = 0; i < run.length; i += 1) {
+            run[i] = rows[start + i];
+        }
+        Arrays.sort(run, (row1, row2) ->
+                    KeyOrder.compare(KeyOrder.Kind.STRINGS, table, row1,
+                                     columns, table, row2, columns));
+        int[] result = new int[run.length];
+        for (int i = 0; i < run.length; i += 1) {
+            result[i] = run[i];
+        }
+        return result;
+    }
+
+    /** Write to FILE each of RUN, which are rows of TABLE, followed by
+     *  its values in COLUMNS, each as its length in bytes and its UTF-8
+     *  encoding.  (Unlike writeUTF, this allows values of any
+     *  length.) */
+    private static void writeRun(Table table, int[] run, int[] columns,
+                                 File file) throws IOException {
+        try (DataOutputStream output =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(file)))) {
+            for (int row : run) {
+                output.writeInt(row);
+                for (int col : columns) {
+                    byte[] value =
+                        table.get(row, col).getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(value.length);
+                    output.write(value);
+                }
+            }
+        }
+    }
+
+    /** Return the rows in the runs written to FILES, which total SIZE
+     *  rows with keys of KEYLENGTH values, and of which all but the last
+     *  hold RUNROWS rows, merged in order of their keys. */
+    private static int[] merge(ArrayList<File> files, int size,
+                               int keyLength, int runRows)
+        throws IOException {
+        PriorityQueue<Run> queue =
+            new PriorityQueue<>(files.size(), ExternalSort::compareKeys);
+        ArrayList<Run> runs = new ArrayList<>();
+        try {
+            for (int k = 0; k < files.size(); k += 1) {
+                Run run = new Run(files.get(k), keyLength,
+                                  Math.min(runRows, size - k * runRows));
+                runs.add(run);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            int[] result = new int[size];
+            for (int i = 0; i < size; i += 1) {
+                Run run = queue.remove();
+                result[i] = run._row;
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            return result;
+        } finally {
+            for (Run run : runs) {
+                run._input.close();
+            }
+        }
+    }
+
+    /** Return <0, 0, or >0 as the current key of RUN1 is
+     *  lexicographically less than, equal to, or greater than that of
+     *  RUN2. */
+    private static int compareKeys(Run run1, Run run2) {
+        for (int k = 0; k < run1._key.length; k += 1) {
+            int c = run1._key[k].compareTo(run2._key[k]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** A run being read back from its file. */
+    private static class Run {
+
+        /** A run of SIZE rows, with keys of KEYLENGTH values, read from
+         *  FILE. */
+        Run(File file, int keyLength, int size) throws IOException {
+            _input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+            _key = new String[keyLength];
+            _remaining = size;
+        }
+
+        /** Read my next row and its key into _row and _key, returning
+         *  false if I have no more. */
+        boolean advance() throws IOException {
+            if (_remaining == 0) {
+                return false;
+            }
+            _remaining -= 1;
+            _row = _input.readInt();
+            for (int k = 0; k < _key.length; k += 1) {
+                byte[] value = new byte[_input.readInt()];
+                _input.readFully(value);
+                _key[k] = new String(value, StandardCharsets.UTF_8);
+            }
+            return true;
+        }
+
+        /** The file I am read from. */
+        private final DataInputStream _input;
+        /** The number of my rows not yet read. */
+        private int _remaining;
+        /** My current row. */
+        private int _row;
+        /** The key of my current row. */
+        private final String[] _key;
+    }
+}
@@ -0,0 +1,59 @@
+package db61b;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+
+/** Fixtures and a brute-force oracle shared by the tests of the join
+ *  operators.
+ *  @author andrew */
+class JoinTestUtils {
+
+    /** Return 0, 1, ..., N - 1. */
+    static int[] all(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = i;
+        }
+        return result;
+    }
+
+    /** Return the pairs "ROW1,ROW2" of rows of TABLE1 and TABLE2 whose
+     *  values in columns KEY1 and KEY2, respectively, are equal, found
+     *  by comparing every pair. */
+    static Set<String> nestedLoops(Table table1, int[] key1,
+                                   Table table2, int[] key2) {
+        Set<String> result = new HashSet<>();
+        for (int row1 = 0; row1 < table1.size(); row1 += 1) {
+            for (int row2 = 0; row2 < table2.size(); row2 += 1) {
+                boolean equal = true;
+                for (int k = 0; k < key1.length && equal; k += 1) {
+                    equal = table1.get(row1, key1[k])
+                        .equals(table2.get(row2, key2[k]));
+                }
+                if (equal) {
+                    result.add(row1 + "," + row2);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the tuples that PLAN produces, each as its row numbers
+     *  separated by commas, checking that none is produced twice. */
+    static Set<String> tuples(Operator plan) {
+        Set<String> result = new HashSet<>();
+        while (plan.next()) {
+            StringBuilder tuple = new StringBuilder();
+            for (int row : plan.tuple()) {
+                if (tuple.length() > 0) {
+                    tuple.append(',');
+                }
+                tuple.append(row);
+            }
+            assertTrue(result.add(tuple.toString()));
+        }
+        return result;
+    }
+}
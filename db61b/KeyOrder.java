@@ -0,0 +1,114 @@
+package db61b;
+
+/** The orders on a join key in which a merge join (see
+ *  Operator.MergeJoin) can take the rows of its inputs, and the means
+ *  of producing rows in those orders from the orderings a Table already
+ *  maintains.  A Table keeps its rows in lexicographic order (see
+ *  Table.index()), which orders them on any join key made of a prefix
+ *  of its columns, and a ColumnIndex keeps them in order of the values
+ *  in its column, compared as conditions compare them.  Rows whose keys
+ *  are equal are adjacent in any of these orders, though rows adjacent
+ *  and equal in order (such as "1" and "1.0" in a DOUBLE column) need
+ *  not have equal keys.
+ *  @author andrew */
+class KeyOrder {
+
+    /** The kinds of order: lexicographic on the raw values of the key
+     *  columns, or on the values of a single key column compared as
+     *  trimmed strings, as longs, or as doubles. */
+    enum Kind { STRINGS, TRIMMED, LONGS, DOUBLES }
+
+    /** Return a kind of order in which the rows of TABLE1 and those of
+     *  TABLE2 are both already sorted (so that producing them in that
+     *  order sorts nothing) on the join key whose kth column is
+     *  COMMON1[k] in TABLE1 and COMMON2[k] in TABLE2, or null if there
+     *  is none.  COMMON1 must be increasing. */
+    static Kind presorted(Table table1, int[] common1,
+                          Table table2, int[] common2) {
+        if (common1.length == 0) {
+            return null;
+        }
+        boolean prefix = true;
+        for (int k = 0; k < common1.length; k += 1) {
+            prefix &= common1[k] == k && common2[k] == k;
+        }
+        if (prefix && table1.indexed() && table2.indexed()) {
+            return Kind.STRINGS;
+        }
+        if (common1.length == 1) {
+            ColumnIndex index1 = table1.columnIndex(common1[0]);
+            ColumnIndex index2 = table2.columnIndex(common2[0]);
+            if (index1 != null && index2 != null
+                && index1.ordered() && index2.ordered()) {
+                Kind kind = kind(table1.column(common1[0]).type());
+                if (kind == kind(table2.column(common2[0]).type())) {
+                    return kind;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return ROWS, which are rows of TABLE, in order KIND on the key
+     *  made of COLUMNS, taking them from the order TABLE maintains, as
+     *  found by presorted. */
+    static int[] sort(Table table, int[] rows, int[] columns, Kind kind) {
+        int[] order = kind == Kind.STRINGS ? table.index()
+            : table.columnIndex(columns[0]).sorted();
+        boolean[] member = new boolean[table.size()];
+        for (int row : rows) {
+            member[row] = true;
+        }
+        int[] result = new int[rows.length];
+        int n = 0;
+        for (int row : order) {
+            if (member[row]) {
+                result[n] = row;
+                n += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return <0, 0, or >0 as the key made of columns COLUMNS1 of row
+     *  ROW1 of TABLE1 is less than, equal to, or greater than that made
+     *  of columns COLUMNS2 of row ROW2 of TABLE2 in order KIND. */
+    static int compare(Kind kind, Table table1, int row1, int[] columns1,
+                       Table table2, int row2, int[] columns2) {
+        ValueList values1 = table1.column(columns1[0]);
+        ValueList values2 = table2.column(columns2[0]);
+        switch (kind) {
+        case TRIMMED:
+            return Condition.compareTrimmed(values1.get(row1),
+                                            values2.get(row2));
+        case LONGS:
+            return Long.compare(values1.longValue(row1),
+                                values2.longValue(row2));
+        case DOUBLES:
+            return Double.compare(values1.doubleValue(row1),
+                                  values2.doubleValue(row2));
+        default:
+            for (int k = 0; k < columns1.length; k += 1) {
+                int c = table1.get(row1, columns1[k])
+                    .compareTo(table2.get(row2, columns2[k]));
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /** Return the kind of order in which a ColumnIndex on a column of
+     *  type TYPE keeps its rows. */
+    private static Kind kind(ValueList.Type type) {
+        switch (type) {
+        case INT: case LONG:
+            return Kind.LONGS;
+        case DOUBLE:
+            return Kind.DOUBLES;
+        default:
+            return Kind.TRIMMED;
+        }
+    }
+}
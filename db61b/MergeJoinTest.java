@@ -0,0 +1,135 @@
+package db61b;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static db61b.JoinTestUtils.all;
+import static db61b.JoinTestUtils.nestedLoops;
+import static db61b.JoinTestUtils.tuples;
+
+public class MergeJoinTest {
+
+    /** Return a table with columns TITLES and rows whose first values are
+     *  VALUES and whose others are distinct. */
+    private static Table table(String[] titles, String... values) {
+        Table table = new Table(titles);
+        for (int i = 0; i < values.length; i += 1) {
+            String[] row = new String[titles.length];
+            row[0] = values[i];
+            for (int k = 1; k < row.length; k += 1) {
+                row[k] = titles[k] + i;
+            }
+            table.add(row);
+        }
+        return table;
+    }
+
+    @Test
+    public void testPrefixOrder() {
+        Table a = table(new String[] {"k", "x"},
+                        "3", "1", "4", "1", "5", "9", "2", "6", "5", "3");
+        Table b = table(new String[] {"k", "y"},
+                        "5", "3", "5", "8", "9", "7", "9", "3", "2", "3");
+        int[] key = {0};
+        assertNull(KeyOrder.presorted(a, key, b, key));
+        a.index();
+        b.index();
+        assertEquals(KeyOrder.Kind.STRINGS,
+                     KeyOrder.presorted(a, key, b, key));
+        int[] rows1 = KeyOrder.sort(a, all(a.size()), key,
+                                    KeyOrder.Kind.STRINGS);
+        int[] rows2 = KeyOrder.sort(b, new int[] {0, 2, 3, 4, 8}, key,
+                                    KeyOrder.Kind.STRINGS);
+        assertArrayEquals(new int[] {8, 0, 2, 3, 4}, rows2);
+        Table[] tables = {a, b};
+        Set<String> expected = nestedLoops(a, key, b, key);
+        expected.removeIf(pair -> pair.endsWith(",1")
+                          || pair.endsWith(",5") || pair.endsWith(",6")
+                          || pair.endsWith(",7") || pair.endsWith(",9"));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected,
+                     tuples(new Operator.MergeJoin(tables, 0, rows1, 1, rows2,
+                                                  key, key,
+                                                  KeyOrder.Kind.STRINGS)));
+    }
+
+    @Test
+    public void testColumnIndexOrder() {
+        Table a = new Table(new String[] {"x", "k"});
+        String[] values = {"2", "1.0", "3", "0", "1", "1.0", "2.5"};
+        for (int i = 0; i < values.length; i += 1) {
+            a.add(new String[] {"x" + i, values[i]});
+        }
+        Table b = table(new String[] {"k", "y"}, "3", "1.0", "2", "1",
+                        "1.5", "3");
+        int[] key1 = {1}, key2 = {0};
+        a.createIndex(1);
+        b.createIndex(0);
+        assertNull(KeyOrder.presorted(a, key1, b, key2));
+        a.columnIndex(1).sorted();
+        b.columnIndex(0).sorted();
+        KeyOrder.Kind kind = KeyOrder.presorted(a, key1, b, key2);
+        assertEquals(KeyOrder.Kind.DOUBLES, kind);
+        Table[] tables = {a, b};
+        assertEquals(nestedLoops(a, key1, b, key2),
+                     tuples(new Operator.MergeJoin(
+                               tables, 0, KeyOrder.sort(a, all(a.size()),
+                                                        key1, kind),
+                               1, KeyOrder.sort(b, all(b.size()), key2,
+                                                kind),
+                               key1, key2, kind)));
+    }
+
+    @Test
+    public void testExternalSort() {
+        Table a = new Table(new String[] {"k", "j", "x"});
+        Table b = new Table(new String[] {"y", "j", "k"});
+        for (int i = 0; i < 500; i += 1) {
+            a.add(new String[] {"k" + i % 17, "j" + i % 5, "x" + i});
+            b.add(new String[] {"y" + i, "j" + i * 3 % 7, "k" + i % 13});
+        }
+        int[] key1 = {0, 1}, key2 = {2, 1};
+        for (int runRows : new int[] {7, 100, 1000}) {
+            int[] rows1 = ExternalSort.sort(a, all(a.size()), key1,
+                                            runRows);
+            int[] rows2 = ExternalSort.sort(b, all(b.size()), key2,
+                                            runRows);
+            for (int i = 1; i < rows1.length; i += 1) {
+                assertTrue(KeyOrder.compare(KeyOrder.Kind.STRINGS,
+                                            a, rows1[i - 1], key1,
+                                            a, rows1[i], key1) <= 0);
+            }
+            Set<String> expected = nestedLoops(a, key1, b, key2);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected,
+                         tuples(new Operator.MergeJoin(
+                                   new Table[] {a, b}, 0, rows1, 1, rows2,
+                                   key1, key2, KeyOrder.Kind.STRINGS)));
+        }
+    }
+
+    @Test
+    public void testExternalSortLongValues() {
+        Table a = new Table(new String[] {"k", "x"});
+        String longKey = "\u00e9".repeat(40000);
+        for (int i = 0; i < 20; i += 1) {
+            a.add(new String[] {longKey + i % 7, "x" + i});
+        }
+        int[] key = {0};
+        int[] sorted = ExternalSort.sort(a, all(a.size()), key, 3);
+        int[] rows = sorted.clone();
+        Arrays.sort(rows);
+        assertArrayEquals(all(a.size()), rows);
+        for (int i = 1; i < sorted.length; i += 1) {
+            assertTrue(KeyOrder.compare(KeyOrder.Kind.STRINGS,
+                                        a, sorted[i - 1], key,
+                                        a, sorted[i], key) <= 0);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package db61b;
+
+import java.util.Arrays;
+
+/** A ValueList of numbers, stored in a primitive array: an int[] while
+ *  all of them are INTs, a long[] while they are all INTs or LONGs, and
+ *  otherwise a double[].  Values are converted back to strings only
+ *  when asked for by get, and since a number is only accepted in its
+ *  canonical printed form, and integers are never mixed with other
+ *  numbers, the strings returned are exactly those added.  This suits
+ *  numeric columns with many distinct values, for which a dictionary
+ *  would save nothing.
+ *  @author andrew */
+class NumericList extends ValueList {
+
+    /** Return a NumericList holding the same values as COLUMN, whose
+     *  type must be numeric. */
+    static NumericList copyOf(ValueList column) {
+        NumericList result = new NumericList();
+        result.widenTo(column.type());
+        int n = column.size();
+        result.ensureCapacity(n);
+        for (int row = 0; row < n; row += 1) {
+            switch (result._type) {
+            case INT:
+                result._ints[row] = (int) column.longValue(row);
+                break;
+            case LONG:
+                result._longs[row] = column.longValue(row);
+                break;
+            default:
+                result._doubles[row] = column.doubleValue(row);
+                break;
+            }
+        }
+        result._size = n;
+        return result;
+    }
+
+    @Override
+    int size() {
+        return _size;
+    }
+
+    @Override
+    String get(int row) {
+        checkRow(row);
+        switch (_type) {
+        case INT:
+            return Integer.toString(_ints[row]);
+        case LONG:
+            return Long.toString(_longs[row]);
+        default:
+            return Double.toString(_doubles[row]);
+        }
+    }
+
+    @Override
+    boolean accepts(String value) {
+        Type type = Type.of(value);
+        if (!type.numeric()) {
+            return false;
+        } else if (_size == 0) {
+            return true;
+        } else {
+            return (type == Type.DOUBLE) == (_type == Type.DOUBLE);
+        }
+    }
+
+    @Override
+    void add(String value) {
+        widenTo(Type.of(value));
+        ensureCapacity(_size + 1);
+        switch (_type) {
+        case INT:
+            _ints[_size] = Integer.parseInt(value);
+            break;
+        case LONG:
+            _longs[_size] = Long.parseLong(value);
+            break;
+        default:
+            _doubles[_size] = Double.parseDouble(value);
+            break;
+        }
+        _size += 1;
+    }
+
+    @Override
+    Type type() {
+        return _type;
+    }
+
+    @Override
+    long longValue(int row) {
+        checkRow(row);
+        return _type == Type.INT ? _ints[row] : _longs[row];
+    }
+
+    @Override
+    double doubleValue(int row) {
+        checkRow(row);
+        switch (_type) {
+        case INT:
+            return _ints[row];
+        case LONG:
+            return _longs[row];
+        default:
+            return _doubles[row];
+        }
+    }
+
+    @Override
+    int distinctValues() {
+        int count = 0;
+        if (_type == Type.DOUBLE) {
+            double[] sorted = Arrays.copyOf(_doubles, _size);
+            Arrays.sort(sorted);
+            for (int row = 0; row < _size; row += 1) {
+                if (row == 0
+                    || Double.compare(sorted[row - 1], sorted[row]) != 0) {
+                    count += 1;
+                }
+            }
+        } else {
+            long[] sorted = new long[_size];
+            for (int row = 0; row < _size; row += 1) {
+                sorted[row] = longValue(row);
+            }
+            Arrays.sort(sorted);
+            for (int row = 0; row < _size; row += 1) {
+                if (row == 0 || sorted[row - 1] != sorted[row]) {
+                    count += 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    void longValues(int[] rows, int n, long[] dest) {
+        if (_type == Type.INT) {
+            for (int i = 0; i < n; i += 1) {
+                dest[i] = _ints[rows[i]];
+            }
+        } else {
+            for (int i = 0; i < n; i += 1) {
+                dest[i] = _longs[rows[i]];
+            }
+        }
+    }
+
+    @Override
+    void doubleValues(int[] rows, int n, double[] dest) {
+        switch (_type) {
+        case INT:
+            for (int i = 0; i < n; i += 1) {
+                dest[i] = _ints[rows[i]];
+            }
+            break;
+        case LONG:
+            for (int i = 0; i < n; i += 1) {
+                dest[i] = _longs[rows[i]];
+            }
+            break;
+        default:
+            for (int i = 0; i < n; i += 1) {
+                dest[i] = _doubles[rows[i]];
+            }
+            break;
+        }
+    }
+
+    /** Throw IndexOutOfBoundsException unless 0 <= ROW < size(). */
+    private void checkRow(int row) {
+        if (row < 0 || row >= _size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /** Convert my storage, if necessary, so as to hold values of TYPE,
+     *  which must be numeric. */
+    private void widenTo(Type type) {
+        Type wider = _type.widen(type);
+        if (wider == _type) {
+            return;
+        }
+        if (wider == Type.LONG) {
+            _longs = new long[Math.max(_ints.length, 16)];
+            for (int row = 0; row < _size; row += 1) {
+                _longs[row] = _ints[row];
+            }
+        } else {
+            _doubles = new double[Math.max(_ints.length, _longs.length)];
+            for (int row = 0; row < _size; row += 1) {
+                _doubles[row] = doubleValue(row);
+            }
+        }
+        _ints = new int[0];
+        if (wider == Type.DOUBLE) {
+            _longs = new long[0];
+        }
+        _type = wider;
+    }
+
+    /** Make room for at least N values. */
+    private void ensureCapacity(int n) {
+        switch (_type) {
+        case INT:
+            if (n > _ints.length) {
+                _ints = Arrays.copyOf(_ints, Math.max(n, 2 * _ints.length));
+            }
+            break;
+        case LONG:
+            if (n > _longs.length) {
+                _longs = Arrays.copyOf(_longs,
+                                       Math.max(n, 2 * _longs.length));
+            }
+            break;
+        default:
+            if (n > _doubles.length) {
+                _doubles = Arrays.copyOf(_doubles,
+                                         Math.max(n, 2 * _doubles.length));
+            }
+            break;
+        }
+    }
+
+    /** Type of my storage. */
+    private Type _type = Type.INT;
+    /** My values, when _type is INT. */
+    private int[] _ints = new int[16];
+    /** My values, when _type is LONG. */
+    private long[] _longs = new long[0];
+    /** My values, when _type is DOUBLE. */
+    private double[] _doubles = new double[0];
+    /** Number of values. */
+    private int _size;
+}
@@ -0,0 +1,553 @@
+package db61b;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** A stage of the pipeline that executes a select from several tables,
+ *  in the iterator (or "Volcano") style.  Each Operator produces a
+ *  stream of tuples on demand, pulling tuples from its input only as it
+ *  needs them, so that rows flow one at a time from the tables, through
+ *  joins and filters, to the projection at the end of the pipeline,
+ *  and no intermediate result is ever stored as a Table.
+ *
+ *  A tuple is an int[] with one element per table in the from clause.
+ *  For each of those tables that an Operator covers (that is, whose
+ *  rows it joins), the corresponding element is the number of one of
+ *  that table's rows; the other elements are meaningless.  Since the
+ *  tables are joined naturally, a tuple need only name the rows it
+ *  combines, and values are fetched from the tables only when a
+ *  condition tests them or the final projection copies them.
+ *
+ *  The only things materialized are the lists of the rows of each table
+ *  that pass the conditions on that table alone (which the planner uses
+ *  to estimate the sizes of joins), and the hash table on the build
+ *  side of each HashJoin.
+ *  @author andrew */
+abstract class Operator {
+
+    /** An Operator producing tuples of rows of TABLES, covering those for
+     *  which COVERED is true. */
+    Operator(Table[] tables, boolean[] covered) {
+        _tables = tables;
+        _covered = covered;
+    }
+
+    /** Advance to my next tuple, returning false if there are no
+     *  more. */
+    abstract boolean next();
+
+    /** Return my current tuple, which remains valid until the next call
+     *  to next().  The caller must not modify it. */
+    abstract int[] tuple();
+
+    /** Return the tables my tuples' elements refer to. */
+    Table[] tables() {
+        return _tables;
+    }
+
+    /** Return an array whose kth element is true iff I cover the kth of
+     *  my tables().  The caller must not modify it. */
+    boolean[] covered() {
+        return _covered;
+    }
+
+    /** Return a copy of COVERED in which element K is also true. */
+    static boolean[] cover(boolean[] covered, int k) {
+        boolean[] result = covered.clone();
+        result[k] = true;
+        return result;
+    }
+
+    /** Produces a tuple for each of a list of rows of one table. */
+    static class Scan extends Operator {
+
+        /** An Operator producing, for each of ROWS in order, a tuple
+         *  whose element SLOT is that row of TABLES[SLOT]. */
+        Scan(Table[] tables, int slot, int[] rows) {
+            super(tables, cover(new boolean[tables.length], slot));
+            _slot = slot;
+            _rows = rows;
+            _tuple = new int[tables.length];
+        }
+
+        @Override
+        boolean next() {
+            if (_next == _rows.length) {
+                return false;
+            }
+            _tuple[_slot] = _rows[_next];
+            _next += 1;
+            return true;
+        }
+
+        @Override
+        int[] tuple() {
+            return _tuple;
+        }
+
+        /** The position of my table. */
+        private final int _slot;
+        /** The rows I produce. */
+        private final int[] _rows;
+        /** Position in _rows of my next row. */
+        private int _next;
+        /** My current tuple. */
+        private final int[] _tuple;
+    }
+
+    /** Produces the tuples of its input that satisfy some conditions. */
+    static class Filter extends Operator {
+
+        /** An Operator producing the tuples of INPUT that satisfy
+         *  CONDITIONS, which must be bound to INPUT's tables and cover
+         *  (see Condition.bind(Table[], boolean[])). */
+        Filter(Operator input, List<Condition> conditions) {
+            super(input.tables(), input.covered());
+            _input = input;
+            _conditions = conditions;
+        }
+
+        @Override
+        boolean next() {
+            while (_input.next()) {
+                if (Condition.test(_conditions, _input.tuple())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int[] tuple() {
+            return _input.tuple();
+        }
+
+        /** My input. */
+        private final Operator _input;
+        /** The conditions my tuples satisfy. */
+        private final List<Condition> _conditions;
+    }
+
+    /** Produces the tuples given by two parallel arrays of rows, as
+     *  computed by ParallelJoin. */
+    static class Pairs extends Operator {
+
+        /** An Operator producing, for each k, a tuple whose element SLOT1
+         *  is row ROWS1[k] of TABLES[SLOT1] and whose element SLOT2 is
+         *  row ROWS2[k] of TABLES[SLOT2]. */
+        Pairs(Table[] tables, int slot1, int[] rows1, int slot2,
+              int[] rows2) {
+            super(tables,
+                  cover(cover(new boolean[tables.length], slot1), slot2));
+            _slot1 = slot1;
+            _slot2 = slot2;
+            _rows1 = rows1;
+            _rows2 = rows2;
+            _tuple = new int[tables.length];
+        }
+
+        @Override
+        boolean next() {
+            if (_next == _rows1.length) {
+                return false;
+            }
+            _tuple[_slot1] = _rows1[_next];
+            _tuple[_slot2] = _rows2[_next];
+            _next += 1;
+            return true;
+        }
+
+        @Override
+        int[] tuple() {
+            return _tuple;
+        }
+
+        /** The positions of my tables. */
+        private final int _slot1, _slot2;
+        /** The pairs of rows I produce. */
+        private final int[] _rows1, _rows2;
+        /** Position in _rows1 and _rows2 of my next pair. */
+        private int _next;
+        /** My current tuple. */
+        private final int[] _tuple;
+    }
+
+    /** Produces the natural join of two lists of rows of two tables that
+     *  are both sorted on their join key (the columns the tables have in
+     *  common), by merging them, so that the join takes time linear in
+     *  the sizes of its inputs (and of its result) and needs no hash
+     *  table.  Each group of rows in one list whose keys are equal in
+     *  order to a group in the other is matched against that group, and
+     *  the pairs whose keys are actually equal are produced. */
+    static class MergeJoin extends Operator {
+
+        /** An Operator producing the natural join of rows ROWS1 of
+         *  TABLES[SLOT1] with rows ROWS2 of TABLES[SLOT2], which are
+         *  sorted in order KIND on the join key whose kth column is
+         *  COMMON1[k] in the first table and COMMON2[k] in the
+         *  second. */
+        MergeJoin(Table[] tables, int slot1, int[] rows1, int slot2,
+                  int[] rows2, int[] common1, int[] common2,
+                  KeyOrder.Kind kind) {
+            super(tables,
+                  cover(cover(new boolean[tables.length], slot1), slot2));
+            _table1 = tables[slot1];
+            _table2 = tables[slot2];
+            _slot1 = slot1;
+            _slot2 = slot2;
+            _rows1 = rows1;
+            _rows2 = rows2;
+            _common1 = common1;
+            _common2 = common2;
+            _kind = kind;
+            _tuple = new int[tables.length];
+        }
+
+        @Override
+        boolean next() {
+            while (true) {
+                while (_i < _end1) {
+                    while (_j < _end2) {
+                        int row2 = _rows2[_j];
+                        _j += 1;
+                        if (sameKey(_rows1[_i], row2)) {
+                            _tuple[_slot1] = _rows1[_i];
+                            _tuple[_slot2] = row2;
+                            return true;
+                        }
+                    }
+                    _i += 1;
+                    _j = _start2;
+                }
+                int i = _end1, j = _end2;
+                while (i < _rows1.length && j < _rows2.length) {
+                    int c = compare(_rows1[i], _rows2[j]);
+                    if (c < 0) {
+                        i += 1;
+                    } else if (c > 0) {
+                        j += 1;
+                    } else {
+                        break;
+                    }
+                }
+                if (i == _rows1.length || j == _rows2.length) {
+                    _i = _end1 = _rows1.length;
+                    return false;
+                }
+                _end1 = i + 1;
+                while (_end1 < _rows1.length
+                       && compare(_rows1[_end1], _rows2[j]) == 0) {
+                    _end1 += 1;
+                }
+                _end2 = j + 1;
+                while (_end2 < _rows2.length
+                       && compare(_rows1[i], _rows2[_end2]) == 0) {
+                    _end2 += 1;
+                }
+                _i = i;
+                _j = _start2 = j;
+            }
+        }
+
+        @Override
+        int[] tuple() {
+            return _tuple;
+        }
+
+        /** Return <0, 0, or >0 as the key of row ROW1 of my first table
+         *  is less than, equal to, or greater than that of row ROW2 of
+         *  my second in my order. */
+        private int compare(int row1, int row2) {
+            return KeyOrder.compare(_kind, _table1, row1, _common1,
+                                    _table2, row2, _common2);
+        }
+
+        /** Return true iff row ROW1 of my first table and row ROW2 of my
+         *  second have identical keys. */
+        private boolean sameKey(int row1, int row2) {
+            for (int k = 0; k < _common1.length; k += 1) {
+                if (!_table1.get(row1, _common1[k])
+                    .equals(_table2.get(row2, _common2[k]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** The tables I join. */
+        private final Table _table1, _table2;
+        /** The positions of my tables. */
+        private final int _slot1, _slot2;
+        /** The sorted rows of my tables. */
+        private final int[] _rows1, _rows2;
+        /** The numbers of the key columns of my tables. */
+        private final int[] _common1, _common2;
+        /** The order of _rows1 and _rows2. */
+        private final KeyOrder.Kind _kind;
+        /** The current groups of equal keys are _rows1[_i .. _end1 - 1]
+         *  (less the rows already matched) and _rows2[_start2 .. _end2 -
+         *  1]; _rows2[_j] is the next row of the latter to match with
+         *  _rows1[_i]. */
+        private int _i, _end1, _start2, _j, _end2;
+        /** My current tuple. */
+        private final int[] _tuple;
+    }
+
+    /** Produces the natural join of its input with a list of rows of
+     *  another table.  A hash table is built on the list of rows, keyed
+     *  on their values in the columns that their table has in common
+     *  with the input's tables, and each tuple of the input is then
+     *  matched against it, so that the input is streamed rather than
+     *  stored.  When there is a single common column and it is
+     *  dictionary-encoded on both sides, the hash table is instead an
+     *  array of chains indexed by the input's codes, so that matching
+     *  compares no strings. */
+    static class HashJoin extends Operator {
+
+        /** Number of bytes of memory that the hash table of a HashJoin
+         *  may use before select prefers to sort its inputs (see
+         *  ExternalSort) and merge them.  It may be set with the system
+         *  property db61b.hashJoinMemory. */
+        static final long MEMORY_LIMIT =
+            Long.getLong("db61b.hashJoinMemory",
+                         Runtime.getRuntime().maxMemory() / 8);
+
+        /** Return an estimate of the number of bytes of memory used by
+         *  the hash table of a HashJoin that builds on BUILDROWS rows. */
+        static long memory(int buildRows) {
+            return 24L * buildRows;
+        }
+
+        /** An Operator producing the natural join of the tuples of INPUT
+         *  with rows ROWS of TABLES[SLOT], which INPUT must not cover. */
+        HashJoin(Operator input, int slot, int[] rows) {
+            super(input.tables(), cover(input.covered(), slot));
+            _input = input;
+            _slot = slot;
+            _rows = rows;
+            _tuple = new int[tables().length];
+
+            Table table = tables()[slot];
+            int n = 0;
+            _buildColumns = new int[table.columns()];
+            _probeSlots = new int[table.columns()];
+            _probeColumns = new int[table.columns()];
+            for (int col = 0; col < table.columns(); col += 1) {
+                String name = table.getTitle(col);
+                for (int k = 0; k < tables().length; k += 1) {
+                    if (input.covered()[k]
+                        && tables()[k].findColumn(name) != -1) {
+                        _buildColumns[n] = col;
+                        _probeSlots[n] = k;
+                        _probeColumns[n] = tables()[k].findColumn(name);
+                        n += 1;
+                        break;
+                    }
+                }
+            }
+            _buildColumns = Arrays.copyOf(_buildColumns, n);
+            _probeSlots = Arrays.copyOf(_probeSlots, n);
+            _probeColumns = Arrays.copyOf(_probeColumns, n);
+            _next = new int[rows.length];
+            _chain = -1;
+
+            if (n == 1 && table.column(_buildColumns[0]).encoded()
+                && tables()[_probeSlots[0]].column(_probeColumns[0])
+                   .encoded()) {
+                buildOnCodes();
+            } else {
+                buildOnHashes();
+            }
+        }
+
+        @Override
+        boolean next() {
+            while (true) {
+                while (_chain != -1) {
+                    int i = _chain;
+                    _chain = _next[i];
+                    if (_hashes == null || (_hashes[i] == _probeHash
+                                            && sameKey(_rows[i]))) {
+                        _tuple[_slot] = _rows[i];
+                        return true;
+                    }
+                }
+                if (!_input.next()) {
+                    return false;
+                }
+                int[] probe = _input.tuple();
+                System.arraycopy(probe, 0, _tuple, 0, probe.length);
+                if (_hashes == null) {
+                    int code = tables()[_probeSlots[0]]
+                        .column(_probeColumns[0]).code(probe[_probeSlots[0]]);
+                    _chain = code < _first.length ? _first[code] : -1;
+                } else {
+                    _probeHash = probeHash(probe);
+                    _chain = _first[(int) _probeHash & (_first.length - 1)];
+                }
+            }
+        }
+
+        @Override
+        int[] tuple() {
+            return _tuple;
+        }
+
+        /** Build my hash table as chains indexed by the codes, in the
+         *  input's common column, of the values of my rows' common
+         *  column. */
+        private void buildOnCodes() {
+            ValueList buildValues =
+                tables()[_slot].column(_buildColumns[0]);
+            ValueList probeValues =
+                tables()[_probeSlots[0]].column(_probeColumns[0]);
+            _first = new int[probeValues.dictionarySize()];
+            Arrays.fill(_first, -1);
+            int[] translate = new int[buildValues.dictionarySize()];
+            Arrays.fill(translate, -2);
+            for (int i = _rows.length - 1; i >= 0; i -= 1) {
+                int code = buildValues.code(_rows[i]);
+                if (translate[code] == -2) {
+                    translate[code] =
+                        probeValues.codeOf(buildValues.valueOf(code));
+                }
+                int key = translate[code];
+                _next[i] = -1;
+                if (key != -1) {
+                    _next[i] = _first[key];
+                    _first[key] = i;
+                }
+            }
+        }
+
+        /** Build my hash table as chains indexed by the low bits of the
+         *  hashes of my rows' keys. */
+        private void buildOnHashes() {
+            int capacity = Integer.highestOneBit(Math.max(_rows.length, 1))
+                * 2;
+            _first = new int[capacity];
+            Arrays.fill(_first, -1);
+            _hashes = new long[_rows.length];
+            Table table = tables()[_slot];
+            for (int i = _rows.length - 1; i >= 0; i -= 1) {
+                long h = SEED;
+                for (int col : _buildColumns) {
+                    h = mix(h, table.column(col).get(_rows[i]));
+                }
+                _hashes[i] = h;
+                int slot = (int) h & (capacity - 1);
+                _next[i] = _first[slot];
+                _first[slot] = i;
+            }
+        }
+
+        /** Return the hash of the key of the input tuple PROBE. */
+        private long probeHash(int[] probe) {
+            long h = SEED;
+            for (int k = 0; k < _probeSlots.length; k += 1) {
+                h = mix(h, tables()[_probeSlots[k]].column(_probeColumns[k])
+                        .get(probe[_probeSlots[k]]));
+            }
+            return h;
+        }
+
+        /** Return true iff row ROW of my table has the same key as my
+         *  current tuple. */
+        private boolean sameKey(int row) {
+            Table table = tables()[_slot];
+            for (int k = 0; k < _buildColumns.length; k += 1) {
+                String probeValue =
+                    tables()[_probeSlots[k]].column(_probeColumns[k])
+                    .get(_tuple[_probeSlots[k]]);
+                if (!table.column(_buildColumns[k]).get(row)
+                    .equals(probeValue)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Return the result of combining the key hash H with VALUE. */
+        private static long mix(long h, String value) {
+            h = (h ^ value.hashCode()) * 0x100000001b3L;
+            return h ^ (h >>> 29);
+        }
+
+        /** Initial value of key hashes. */
+        private static final long SEED = 0xcbf29ce484222325L;
+
+        /** My input (the probe side). */
+        private final Operator _input;
+        /** The position of the table I join with my input. */
+        private final int _slot;
+        /** The rows of that table (the build side). */
+        private final int[] _rows;
+        /** The numbers of the columns of my table that form its key. */
+        private int[] _buildColumns;
+        /** The positions of the input tables and the numbers of the
+         *  columns that form the input's key, corresponding to
+         *  _buildColumns. */
+        private int[] _probeSlots, _probeColumns;
+        /** Heads of the chains of positions in _rows that make up my
+         *  hash table, indexed by code or by key hash. */
+        private int[] _first;
+        /** Links of the chains: the position in _rows after position i in
+         *  its chain is _next[i], or -1. */
+        private final int[] _next;
+        /** The key hashes of _rows, or null if chains are indexed by
+         *  code. */
+        private long[] _hashes;
+        /** The key hash of the current input tuple. */
+        private long _probeHash;
+        /** Position in _rows of the next possible match for the current
+         *  input tuple, or -1. */
+        private int _chain;
+        /** My current tuple. */
+        private final int[] _tuple;
+    }
+
+    /** Produces the tuples of its input, measuring the work done to
+     *  produce them for "explain analyze" (see Profile). */
+    static class Measured extends Operator {
+
+        /** An Operator producing the tuples of INPUT, recording in NODE
+         *  the number of them and the time and memory taken by each
+         *  call to INPUT.next(). */
+        Measured(Operator input, Profile.Node node) {
+            super(input.tables(), input.covered());
+            _input = input;
+            _node = node;
+        }
+
+        @Override
+        boolean next() {
+            _node.begin();
+            boolean more = _input.next();
+            _node.end();
+            if (more) {
+                _node.addRowsOut(1);
+            }
+            return more;
+        }
+
+        @Override
+        int[] tuple() {
+            return _input.tuple();
+        }
+
+        /** Return the Node in which I record measurements. */
+        Profile.Node node() {
+            return _node;
+        }
+
+        /** My input. */
+        private final Operator _input;
+        /** Where I record measurements. */
+        private final Profile.Node _node;
+    }
+
+    /** The tables my tuples refer to. */
+    private final Table[] _tables;
+    /** Which of _tables I cover. */
+    private final boolean[] _covered;
+}
@@ -0,0 +1,87 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static db61b.JoinTestUtils.all;
+import static db61b.JoinTestUtils.nestedLoops;
+import static db61b.JoinTestUtils.tuples;
+
+public class OperatorTest {
+
+    /** Return three tables to join: students(SID, Name),
+     *  enrolled(SID, CCN), and schedule(CCN, Dept). */
+    private static Table[] tables() {
+        Table students = new Table(new String[] {"SID", "Name"});
+        for (int i = 0; i < 60; i += 1) {
+            students.add(new String[] {"" + i, "n" + i % 7});
+        }
+        Table enrolled = new Table(new String[] {"SID", "CCN"});
+        for (int i = 0; i < 200; i += 1) {
+            enrolled.add(new String[] {"" + i * 3 % 70, "" + i % 11});
+        }
+        Table schedule = new Table(new String[] {"CCN", "Dept"});
+        for (int i = 0; i < 9; i += 1) {
+            schedule.add(new String[] {"" + i, i % 2 == 0 ? "EECS" : "Math"});
+        }
+        return new Table[] {students, enrolled, schedule};
+    }
+
+    @Test
+    public void testHashJoin() {
+        Table[] from = tables();
+        Set<String> courses =
+            nestedLoops(from[1], new int[] {1}, from[2], new int[] {0});
+        Set<String> expected = new HashSet<>();
+        for (String pair : nestedLoops(from[0], new int[] {0},
+                                       from[1], new int[] {0})) {
+            String e = pair.substring(pair.indexOf(',') + 1);
+            for (String course : courses) {
+                if (course.startsWith(e + ",")) {
+                    expected.add(pair + course.substring(e.length()));
+                }
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        Operator plan = new Operator.Scan(from, 1, all(from[1].size()));
+        plan = new Operator.HashJoin(plan, 0, all(from[0].size()));
+        plan = new Operator.HashJoin(plan, 2, all(from[2].size()));
+        assertEquals(expected, tuples(plan));
+
+        plan = new Operator.Scan(from, 2, all(from[2].size()));
+        plan = new Operator.HashJoin(plan, 1, all(from[1].size()));
+        plan = new Operator.HashJoin(plan, 0, all(from[0].size()));
+        assertEquals(expected, tuples(plan));
+    }
+
+    @Test
+    public void testFilter() {
+        Table[] from = tables();
+        Operator plan = new Operator.Scan(from, 0, all(from[0].size()));
+        plan = new Operator.HashJoin(plan, 1, all(from[1].size()));
+        Condition cond = new Condition(new Column("Name", from[0]), "=",
+                                       "n3");
+        assertTrue(cond.appliesTo(from, plan.covered()));
+        List<Condition> conditions = new ArrayList<>();
+        conditions.add(cond.bind(from, plan.covered()));
+        Set<String> expected = new HashSet<>();
+        for (String tuple : tuples(
+                 new Operator.HashJoin(
+                     new Operator.Scan(from, 0, all(from[0].size())), 1,
+                     all(from[1].size())))) {
+            int s = Integer.parseInt(tuple.split(",")[0]);
+            if (from[0].get(s, 1).equals("n3")) {
+                expected.add(tuple);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, tuples(new Operator.Filter(plan, conditions)));
+    }
+}
@@ -0,0 +1,316 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/** Computes natural joins of large tables using all available
+ *  processors, by a radix-partitioned hash join.
+ *
+ *  Both inputs are first divided into chunks of rows, and for each
+ *  chunk, concurrently, the join key of each row (its values in the
+ *  columns the tables have in common) is hashed, and the rows are
+ *  counted by partition, which is given by the top bits of the hash.
+ *  From the counts, each chunk is given its own region of each
+ *  partition, and the chunks then scatter their rows and hashes into
+ *  those regions, again concurrently and without synchronization.
+ *  Rows with equal keys are now in the same partition of each input,
+ *  and each pair of partitions is joined as a separate task: a small
+ *  hash table is built on the smaller input's partition and probed with
+ *  the other's, and the numbers of the pairs of rows that join are
+ *  collected in arrays private to the task.  Finally, the arrays are
+ *  concatenated, partition by partition, into the result, which the
+ *  select pipeline (see Operator) then reads like any other join
+ *  input.  No Table is built and no row values are copied.
+ *  @author andrew */
+class ParallelJoin {
+
+    /** Default number of input rows (on both sides together) at or above
+     *  which select joins tables in parallel.  It may be set with the
+     *  system property db61b.parallelJoinThreshold. */
+    static final int THRESHOLD =
+        Integer.getInteger("db61b.parallelJoinThreshold", 1 << 16);
+
+    /** Default number of rows of an input hashed and partitioned by
+     *  each concurrent task. */
+    static final int CHUNK_ROWS = 1 << 16;
+
+    /** The largest number of bits of the key hash used to choose a
+     *  partition. */
+    private static final int MAX_PARTITION_BITS = 12;
+
+    /** Number of build rows per partition at which partitions stop
+     *  being made smaller, so that each partition's hash table is
+     *  small enough to stay in cache. */
+    private static final int PARTITION_ROWS = 1 << 13;
+
+    /** Return the pairs of rows that make up the natural join of rows
+     *  ROWS1 of TABLE1 with rows ROWS2 of TABLE2, where COMMON1[k] and
+     *  COMMON2[k] are the numbers of the kth column the tables have in
+     *  common, as two arrays of equal length: row RESULT[0][k] of TABLE1
+     *  joins with row RESULT[1][k] of TABLE2.  The inputs are hashed and
+     *  partitioned in pieces of CHUNKROWS rows. */
+    static int[][] join(Table table1, int[] rows1, Table table2, int[] rows2,
+                        int[] common1, int[] common2, int chunkRows) {
+        Side side1 = new Side(table1, rows1, common1);
+        Side side2 = new Side(table2, rows2, common2);
+        Side build = rows1.length <= rows2.length ? side1 : side2;
+        int bits = 1;
+        while (bits < MAX_PARTITION_BITS
+               && ((1 << bits) < 4 * ForkJoinPool.getCommonPoolParallelism()
+                   || (build._rows.length >> bits) > PARTITION_ROWS)) {
+            bits += 1;
+        }
+        side1.partition(bits, chunkRows);
+        side2.partition(bits, chunkRows);
+
+        ArrayList<Partition> partitions = new ArrayList<>();
+        for (int p = 0; p < 1 << bits; p += 1) {
+            partitions.add(new Partition(side1, side2, p, build == side1));
+        }
+        runAll(partitions);
+        int total = 0;
+        for (Partition partition : partitions) {
+            total += partition._size;
+        }
+        int[][] result = new int[2][total];
+        total = 0;
+        for (Partition partition : partitions) {
+            System.arraycopy(partition._rows1, 0, result[0], total,
+                             partition._size);
+            System.arraycopy(partition._rows2, 0, result[1], total,
+                             partition._size);
+            total += partition._size;
+        }
+        return result;
+    }
+
+    /** Run TASKS concurrently on the common ForkJoinPool, returning when
+     *  all are done. */
+    private static void runAll(ArrayList<? extends ForkJoinTask<?>> tasks) {
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /** Return the hash of the join key of row ROW of TABLE, whose key
+     *  columns are numbered COLUMNS.  Its top bits choose a partition and
+     *  its bottom bits a slot in a partition's hash table. */
+    private static long keyHash(Table table, int row, int[] columns) {
+        long h = 0xcbf29ce484222325L;
+        for (int col : columns) {
+            h = (h ^ table.column(col).get(row).hashCode()) * 0x100000001b3L;
+        }
+        return (h ^ (h >>> 31)) * 0x9e3779b97f4a7c15L;
+    }
+
+    /** One input of a join. */
+    private static class Side {
+
+        /** The input made of rows ROWS of TABLE, whose join key columns
+         *  are numbered COLUMNS. */
+        Side(Table table, int[] rows, int[] columns) {
+            _table = table;
+            _rows = rows;
+            _columns = columns;
+        }
+
+        /** Divide my rows into 2**BITS partitions by their key hashes,
+         *  setting _parts, _partHashes, and _starts, working in pieces
+         *  of CHUNKROWS rows. */
+        void partition(int bits, int chunkRows) {
+            int n = _rows.length;
+            int shift = 64 - bits;
+            long[] hashes = new long[n];
+            ArrayList<Chunk> chunks = new ArrayList<>();
+            for (int start = 0; start < n || start == 0;
+                 start += chunkRows) {
+                chunks.add(new Chunk(this, hashes, start,
+                                     Math.min(start + chunkRows, n),
+                                     shift));
+            }
+            runAll(chunks);
+
+            _starts = new int[(1 << bits) + 1];
+            int total = 0;
+            for (int p = 0; p < 1 << bits; p += 1) {
+                _starts[p] = total;
+                for (Chunk chunk : chunks) {
+                    int count = chunk._counts[p];
+                    chunk._counts[p] = total;
+                    total += count;
+                }
+            }
+            _starts[1 << bits] = total;
+
+            _parts = new int[n];
+            _partHashes = new long[n];
+            for (Chunk chunk : chunks) {
+                chunk._scatter = true;
+                chunk.reinitialize();
+            }
+            runAll(chunks);
+        }
+
+        /** The table my rows come from. */
+        final Table _table;
+        /** The numbers of my rows in _table. */
+        final int[] _rows;
+        /** The numbers of my join key columns in _table. */
+        final int[] _columns;
+        /** After partition, my rows grouped by partition: those of
+         *  partition p are _parts[_starts[p] .. _starts[p + 1] - 1], in
+         *  the order they appear in _rows. */
+        int[] _parts;
+        /** The key hashes of the rows in _parts. */
+        long[] _partHashes;
+        /** See _parts. */
+        int[] _starts;
+    }
+
+    /** A task that hashes and counts, or scatters, one range of the rows
+     *  of a Side. */
+    private static class Chunk extends RecursiveAction {
+
+        /** A task for the rows of SIDE at positions START .. END - 1 of
+         *  its _rows, whose key hashes are to be stored in HASHES, and
+         *  whose partition numbers are the top bits of those hashes,
+         *  starting at bit SHIFT. */
+        Chunk(Side side, long[] hashes, int start, int end, int shift) {
+            _side = side;
+            _hashes = hashes;
+            _start = start;
+            _end = end;
+            _shift = shift;
+            _counts = new int[(int) (1L << (64 - shift))];
+        }
+
+        @Override
+        protected void compute() {
+            int[] rows = _side._rows;
+            if (!_scatter) {
+                for (int i = _start; i < _end; i += 1) {
+                    long h = keyHash(_side._table, rows[i], _side._columns);
+                    _hashes[i] = h;
+                    _counts[(int) (h >>> _shift)] += 1;
+                }
+            } else {
+                for (int i = _start; i < _end; i += 1) {
+                    long h = _hashes[i];
+                    int k = _counts[(int) (h >>> _shift)]++;
+                    _side._parts[k] = rows[i];
+                    _side._partHashes[k] = h;
+                }
+            }
+        }
+
+        /** The input I work on. */
+        private final Side _side;
+        /** The key hashes of all of _side's rows, by position. */
+        private final long[] _hashes;
+        /** Bounds of my range of positions in _side's rows. */
+        private final int _start, _end;
+        /** Shift that extracts a partition number from a hash. */
+        private final int _shift;
+        /** When counting, the number of my rows in each partition; when
+         *  scattering, the position in _side._parts of my next row in
+         *  each partition. */
+        private final int[] _counts;
+        /** True once I am to scatter rather than hash and count. */
+        private boolean _scatter;
+    }
+
+    /** A task that joins one partition of each input. */
+    private static class Partition extends RecursiveAction {
+
+        /** A task joining partition P of SIDE1 with partition P of SIDE2,
+         *  building on SIDE1's partition if BUILDFIRST, and otherwise on
+         *  SIDE2's. */
+        Partition(Side side1, Side side2, int p, boolean buildFirst) {
+            _side1 = side1;
+            _side2 = side2;
+            _p = p;
+            _buildFirst = buildFirst;
+        }
+
+        @Override
+        protected void compute() {
+            Side build = _buildFirst ? _side1 : _side2;
+            Side probe = _buildFirst ? _side2 : _side1;
+            int buildStart = build._starts[_p],
+                buildEnd = build._starts[_p + 1];
+            int probeStart = probe._starts[_p],
+                probeEnd = probe._starts[_p + 1];
+            if (buildStart == buildEnd || probeStart == probeEnd) {
+                return;
+            }
+
+            int capacity = Integer.highestOneBit(buildEnd - buildStart) * 2;
+            int[] first = new int[capacity];
+            Arrays.fill(first, -1);
+            int[] next = new int[buildEnd - buildStart];
+            for (int k = buildStart; k < buildEnd; k += 1) {
+                int slot = (int) build._partHashes[k] & (capacity - 1);
+                next[k - buildStart] = first[slot];
+                first[slot] = k - buildStart;
+            }
+
+            for (int k = probeStart; k < probeEnd; k += 1) {
+                long h = probe._partHashes[k];
+                int probeRow = probe._parts[k];
+                for (int i = first[(int) h & (capacity - 1)]; i != -1;
+                     i = next[i]) {
+                    int b = buildStart + i;
+                    int buildRow = build._parts[b];
+                    if (build._partHashes[b] == h
+                        && sameKey(build, buildRow, probe, probeRow)) {
+                        emit(_buildFirst ? buildRow : probeRow,
+                             _buildFirst ? probeRow : buildRow);
+                    }
+                }
+            }
+        }
+
+        /** Return true iff row ROW1 of SIDE1 and row ROW2 of SIDE2 have
+         *  equal join keys. */
+        private boolean sameKey(Side side1, int row1, Side side2, int row2) {
+            for (int k = 0; k < side1._columns.length; k += 1) {
+                String val1 = side1._table.column(side1._columns[k]).get(row1);
+                String val2 = side2._table.column(side2._columns[k]).get(row2);
+                if (!val1.equals(val2)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Record that row ROW1 of _side1 joins with row ROW2 of
+         *  _side2. */
+        private void emit(int row1, int row2) {
+            if (_size == _rows1.length) {
+                _rows1 = Arrays.copyOf(_rows1, 2 * _size);
+                _rows2 = Arrays.copyOf(_rows2, 2 * _size);
+            }
+            _rows1[_size] = row1;
+            _rows2[_size] = row2;
+            _size += 1;
+        }
+
+        /** The inputs. */
+        private final Side _side1, _side2;
+        /** The number of my partition. */
+        private final int _p;
+        /** True iff I build on _side1. */
+        private final boolean _buildFirst;
+        /** The pairs of rows that join: row _rows1[k] of _side1 with row
+         *  _rows2[k] of _side2, for 0 <= k < _size. */
+        private int[] _rows1 = new int[16], _rows2 = new int[16];
+        /** The number of pairs of rows that join. */
+        private int _size;
+    }
+}
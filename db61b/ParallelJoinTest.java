@@ -0,0 +1,65 @@
+package db61b;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static db61b.JoinTestUtils.all;
+import static db61b.JoinTestUtils.nestedLoops;
+
+public class ParallelJoinTest {
+
+    /** Return the pairs of row numbers in the result PAIRS of
+     *  ParallelJoin.join, as a set of strings "ROW1,ROW2". */
+    private static Set<String> pairs(int[][] pairs) {
+        assertEquals(pairs[0].length, pairs[1].length);
+        Set<String> result = new HashSet<>();
+        for (int k = 0; k < pairs[0].length; k += 1) {
+            result.add(pairs[0][k] + "," + pairs[1][k]);
+        }
+        assertEquals(pairs[0].length, result.size());
+        return result;
+    }
+
+    @Test
+    public void testJoin() {
+        Table students = new Table(new String[] {"SID", "Name"});
+        for (int i = 0; i < 2000; i += 1) {
+            students.add(new String[] {Integer.toString(i), "s" + i % 300});
+        }
+        Table enrolled = new Table(new String[] {"CCN", "SID", "Grade"});
+        for (int i = 0; i < 5000; i += 1) {
+            enrolled.add(new String[] {Integer.toString(i % 40),
+                                       Integer.toString(i * 7 % 2500),
+                                       "ABCDF".substring(i % 5, i % 5 + 1)});
+        }
+
+        Set<String> expected =
+            nestedLoops(enrolled, new int[] {1}, students, new int[] {0});
+        for (int chunkRows : new int[] {64, 1 << 16}) {
+            int[][] joined =
+                ParallelJoin.join(enrolled, all(enrolled.size()), students,
+                                  all(students.size()), new int[] {1},
+                                  new int[] {0}, chunkRows);
+            assertEquals(expected, pairs(joined));
+        }
+    }
+
+    @Test
+    public void testCrossProductAndEmpty() {
+        Table a = new Table(new String[] {"a"});
+        Table b = new Table(new String[] {"b"});
+        for (int i = 0; i < 30; i += 1) {
+            a.add(new String[] {"a" + i});
+            b.add(new String[] {"b" + i});
+        }
+        int[][] joined = ParallelJoin.join(a, all(30), b, all(30),
+                                           new int[0], new int[0], 7);
+        assertEquals(nestedLoops(a, new int[0], b, new int[0]),
+                     pairs(joined));
+        joined = ParallelJoin.join(a, new int[0], b, all(30), new int[0],
+                                   new int[0], 7);
+        assertEquals(0, pairs(joined).size());
+    }
+}
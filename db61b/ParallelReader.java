@@ -0,0 +1,175 @@
+package db61b;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static db61b.Utils.*;
+
+/** Reads large .db files using all available processors.
+ *
+ *  The file is memory-mapped and first scanned once, sequentially, for
+ *  the line breaks that end records, keeping track of whether each
+ *  byte is inside a quoted field.  That scan divides the file into
+ *  chunks of roughly CHUNK_SIZE bytes, each holding whole records.
+ *  The chunks are then decoded and parsed concurrently on the common
+ *  ForkJoinPool, each into its own list of rows together with their
+ *  row hashes.  Finally, the rows are added to the Table chunk by
+ *  chunk, in file order, so that the resulting table (including which
+ *  duplicates are dropped) is exactly the one a sequential read would
+ *  produce.
+ *  @author andrew */
+class ParallelReader {
+
+    /** Default approximate size of the chunks parsed concurrently. */
+    static final long CHUNK_SIZE = 8L << 20;
+
+    /** Size of the windows through which the file is scanned for
+     *  record boundaries. */
+    private static final long SCAN_WINDOW = 256L << 20;
+
+    /** Read the contents of the file NAME.db, in pieces of about
+     *  CHUNKSIZE bytes, and return it as a Table.  Format errors in the
+     *  .db file cause a DBException. */
+    static Table readTable(String name, long chunkSize) {
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(name + ".db"),
+                              StandardOpenOption.READ)) {
+            ArrayList<Long> bounds = boundaries(channel, chunkSize);
+            if (bounds.size() < 2) {
+                throw error("missing header in DB file");
+            }
+            Chunk header = new Chunk(name, channel, 0, bounds.get(1), -1);
+            header.compute();
+            if (header._rows.isEmpty()) {
+                throw error("missing header in DB file");
+            }
+            Table table = new Table(header._rows.get(0));
+
+            ArrayList<Chunk> chunks = new ArrayList<>();
+            for (int i = 2; i < bounds.size(); i += 1) {
+                chunks.add(new Chunk(name, channel, bounds.get(i - 1),
+                                     bounds.get(i), table.columns()));
+            }
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(chunks);
+                }
+            });
+
+            for (Chunk chunk : chunks) {
+                for (int k = 0; k < chunk._rows.size(); k += 1) {
+                    table.add(chunk._rows.get(k), chunk._hashes[k]);
+                }
+            }
+            table.compact();
+            return table;
+        } catch (NoSuchFileException e) {
+            throw error("could not find %s.db", name);
+        } catch (IOException e) {
+            throw error("problem reading from %s.db", name);
+        }
+    }
+
+    /** Return the offsets in CHANNEL of the starts of its chunks,
+     *  followed by its size.  The first chunk holds just the header
+     *  record; the rest hold whole records and are at least CHUNKSIZE
+     *  bytes long, except for the last. */
+    private static ArrayList<Long> boundaries(FileChannel channel,
+                                              long chunkSize)
+        throws IOException {
+        ArrayList<Long> result = new ArrayList<>();
+        long size = channel.size();
+        long next = 0;
+        boolean quoted = false;
+        result.add(0L);
+        for (long base = 0; base < size; base += SCAN_WINDOW) {
+            MappedByteBuffer window =
+                channel.map(FileChannel.MapMode.READ_ONLY, base,
+                            Math.min(SCAN_WINDOW, size - base));
+            int limit = window.limit();
+            for (int i = 0; i < limit; i += 1) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted && base + i >= next) {
+                    result.add(base + i + 1);
+                    next = base + i + 1 + chunkSize;
+                }
+            }
+        }
+        if (result.get(result.size() - 1) != size) {
+            result.add(size);
+        }
+        return result;
+    }
+
+    /** A task that parses the records in one chunk of a file. */
+    private static class Chunk extends RecursiveAction {
+
+        /** A task parsing bytes START to END of CHANNEL, the file
+         *  NAME.db, each of whose records must have WIDTH fields, unless
+         *  WIDTH is -1. */
+        Chunk(String name, FileChannel channel, long start, long end,
+              int width) {
+            _name = name;
+            _channel = channel;
+            _start = start;
+            _end = end;
+            _width = width;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                MappedByteBuffer bytes =
+                    _channel.map(FileChannel.MapMode.READ_ONLY,
+                                 _start, _end - _start);
+                CharBuffer chars = StandardCharsets.UTF_8.decode(bytes);
+                CSVReader input =
+                    new CSVReader(new CharArrayReader(chars.array(),
+                                                      chars.arrayOffset(),
+                                                      chars.remaining()));
+                while (true) {
+                    String[] row = input.next();
+                    if (row == null) {
+                        break;
+                    }
+                    if (_width != -1 && row.length != _width) {
+                        throw CSVReader.wrongFieldCount(_name);
+                    }
+                    _rows.add(row.clone());
+                }
+            } catch (IOException e) {
+                throw error("problem reading from %s.db", _name);
+            }
+            _hashes = new long[_rows.size()];
+            for (int k = 0; k < _hashes.length; k += 1) {
+                _hashes[k] = Table.rowHash(_rows.get(k));
+            }
+        }
+
+        /** Name of my file, without the .db. */
+        private final String _name;
+        /** File containing my chunk. */
+        private final FileChannel _channel;
+        /** Offsets of the start and end of my chunk in _channel. */
+        private final long _start, _end;
+        /** Required number of fields per record, or -1. */
+        private final int _width;
+        /** Records parsed from my chunk. */
+        private final ArrayList<String[]> _rows = new ArrayList<>();
+        /** Row hashes of _rows. */
+        private long[] _hashes;
+    }
+}
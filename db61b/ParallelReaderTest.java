@@ -0,0 +1,81 @@
+package db61b;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelReaderTest {
+
+    @Before
+    public void createFile() throws IOException {
+        _file = File.createTempFile("parallel", ".db");
+        _name = _file.getPath().replaceFirst("\\.db$", "");
+    }
+
+    @After
+    public void deleteFile() {
+        _file.delete();
+    }
+
+    @Test
+    public void testMatchesSequential() throws IOException {
+        PrintStream output = new PrintStream(_file);
+        output.print("id,name,note\r\n");
+        for (int i = 0; i < 3000; i += 1) {
+            output.printf("%d,\"Name, %d\",\"line one%nline \"\"%d\"\"\"%n",
+                          i % 1700, i % 1700, i % 3);
+        }
+        output.print("last,row,no newline");
+        output.close();
+
+        Table expected = Table.readTable(_name);
+        Table table = ParallelReader.readTable(_name, 100);
+        assertEquals(expected.columns(), table.columns());
+        assertEquals("note", table.getTitle(2));
+        assertEquals(expected.size(), table.size());
+        for (int row = 0; row < table.size(); row += 1) {
+            for (int col = 0; col < table.columns(); col += 1) {
+                assertEquals(expected.get(row, col), table.get(row, col));
+            }
+        }
+        assertEquals("no newline", table.get(table.size() - 1, 2));
+    }
+
+    @Test
+    public void testWrongFieldCount() throws IOException {
+        PrintStream output = new PrintStream(_file);
+        output.print("a,b\n");
+        for (int i = 0; i < 3000; i += 1) {
+            output.printf("%d,%d%n", i, i);
+        }
+        output.print("1,2,3\n");
+        for (int i = 0; i < 3000; i += 1) {
+            output.printf("x%d,%d%n", i, i);
+        }
+        output.close();
+        String message = "wrong number of fields in " + _name + ".db";
+        try {
+            ParallelReader.readTable(_name, 100);
+            fail("read a record with too many fields");
+        } catch (DBException e) {
+            assertEquals(message, e.getMessage());
+        }
+        try {
+            Table.readTable(_name);
+            fail("read a record with too many fields");
+        } catch (DBException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    /** The file read by the tests. */
+    private File _file;
+    /** Its name, without the .db. */
+    private String _name;
+}
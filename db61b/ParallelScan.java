@@ -0,0 +1,155 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Scans and filters the rows of a table for select, using all
+ *  available processors when there are enough rows to make that pay.
+ *
+ *  The rows to be scanned are divided into chunks of CHUNK_ROWS rows,
+ *  which are processed concurrently on the common ForkJoinPool, a
+ *  Batch at a time, each into its own list of results: the numbers of
+ *  the rows that satisfy the conditions, or those rows' projections
+ *  together with their row hashes.  The lists are then added to the
+ *  result chunk by chunk, in row order, by the calling thread alone,
+ *  so that the result (including which duplicates are dropped) is
+ *  exactly the one a sequential scan would produce, and the result
+ *  Table is never touched by more than one thread.  Scans of fewer
+ *  rows than a threshold are done entirely by the calling thread.
+ *  @author andrew */
+class ParallelScan {
+
+    /** Default number of rows at or above which a scan is done in
+     *  parallel.  It may be set with the system property
+     *  db61b.parallelScanThreshold. */
+    static final int THRESHOLD =
+        Integer.getInteger("db61b.parallelScanThreshold", 1 << 16);
+
+    /** Number of rows scanned by each concurrent task. */
+    static final int CHUNK_ROWS = 16 * Batch.SIZE;
+
+    /** Add to RESULT the projections onto the columns numbered COLUMNS of
+     *  the rows of TABLE that satisfy CONDITIONS, which must be bound to
+     *  TABLE, taking the rows in increasing order.  If CANDIDATES is not
+     *  null, only the rows it lists are considered.  The work is done in
+     *  parallel if there are at least THRESHOLD rows to consider.
+     *  Return the number of rows that satisfied CONDITIONS (some of
+     *  whose projections may have been duplicates). */
+    static int select(Table table, List<Condition> conditions,
+                      int[] candidates, int[] columns, Table result,
+                      int threshold) {
+        int matched = 0;
+        for (Chunk chunk : scan(table, conditions, candidates, columns,
+                                threshold)) {
+            for (int k = 0; k < chunk._projections.size(); k += 1) {
+                result.add(chunk._projections.get(k), chunk._hashes[k]);
+            }
+            matched += chunk._projections.size();
+        }
+        return matched;
+    }
+
+    /** Return the numbers, in increasing order, of the rows of TABLE
+     *  that satisfy CONDITIONS, which must be bound to TABLE.  If
+     *  CANDIDATES is not null, only the rows it lists are considered.
+     *  The work is done in parallel if there are at least THRESHOLD rows
+     *  to consider. */
+    static ArrayList<Integer> filter(Table table, List<Condition> conditions,
+                                     int[] candidates, int threshold) {
+        ArrayList<Integer> rows = new ArrayList<>();
+        for (Chunk chunk : scan(table, conditions, candidates, null,
+                                threshold)) {
+            rows.addAll(chunk._rows);
+        }
+        return rows;
+    }
+
+    /** Return the processed Chunks, in row order, of a scan of the rows
+     *  of TABLE (or of CANDIDATES, if not null) that tests CONDITIONS
+     *  and projects onto COLUMNS (if not null), running in parallel if
+     *  there are at least THRESHOLD rows. */
+    private static ArrayList<Chunk> scan(Table table,
+                                         List<Condition> conditions,
+                                         int[] candidates, int[] columns,
+                                         int threshold) {
+        int n = candidates == null ? table.size() : candidates.length;
+        ArrayList<Chunk> chunks = new ArrayList<>();
+        if (n < threshold) {
+            chunks.add(new Chunk(table, conditions, candidates, columns,
+                                 0, n));
+            chunks.get(0).compute();
+            return chunks;
+        }
+        for (int start = 0; start < n; start += CHUNK_ROWS) {
+            chunks.add(new Chunk(table, conditions, candidates, columns,
+                                 start, Math.min(start + CHUNK_ROWS, n)));
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(chunks);
+            }
+        });
+        return chunks;
+    }
+
+    /** A task that scans one range of rows. */
+    private static class Chunk extends RecursiveAction {
+
+        /** A task that scans the rows of TABLE (or of CANDIDATES, if not
+         *  null) at positions START .. END - 1, keeping those that
+         *  satisfy CONDITIONS, and projecting them onto COLUMNS, unless
+         *  that is null. */
+        Chunk(Table table, List<Condition> conditions, int[] candidates,
+              int[] columns, int start, int end) {
+            _table = table;
+            _conditions = conditions;
+            _candidates = candidates;
+            _columns = columns;
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        protected void compute() {
+            Batch batch = new Batch();
+            for (int start = _start; start < _end; start += Batch.SIZE) {
+                int end = Math.min(start + Batch.SIZE, _end);
+                if (_candidates == null) {
+                    batch.fill(start, end);
+                } else {
+                    batch.fill(_candidates, start, end);
+                }
+                batch.filter(_conditions);
+                if (_columns == null) {
+                    batch.addTo(_rows);
+                } else {
+                    batch.project(_table, _columns, _projections::add);
+                }
+            }
+            _hashes = new long[_projections.size()];
+            for (int k = 0; k < _hashes.length; k += 1) {
+                _hashes[k] = Table.rowHash(_projections.get(k));
+            }
+        }
+
+        /** The table scanned. */
+        private final Table _table;
+        /** The conditions rows must satisfy. */
+        private final List<Condition> _conditions;
+        /** The numbers of the rows to consider, or null for all. */
+        private final int[] _candidates;
+        /** The columns to project onto, or null. */
+        private final int[] _columns;
+        /** Bounds of my range of positions in _candidates or _table. */
+        private final int _start, _end;
+        /** The numbers of the rows kept, if _columns is null. */
+        private final ArrayList<Integer> _rows = new ArrayList<>();
+        /** The projections of the rows kept, if _columns is not null. */
+        private final ArrayList<String[]> _projections = new ArrayList<>();
+        /** The rowHashes of _projections. */
+        private long[] _hashes;
+    }
+}
@@ -0,0 +1,72 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelScanTest {
+
+    /** A table of 40000 rows, more than two chunks' worth. */
+    private static Table sample() {
+        Table table = new Table(new String[] {"id", "group", "name"});
+        for (int i = 0; i < 40000; i += 1) {
+            table.add(new String[] {Integer.toString(i),
+                                    Integer.toString(i % 13),
+                                    "n" + (i % 1000)});
+        }
+        return table;
+    }
+
+    /** Return the rows of TABLE, in order, as lists. */
+    private static List<List<String>> rows(Table table) {
+        List<List<String>> result = new ArrayList<>();
+        for (int row = 0; row < table.size(); row += 1) {
+            List<String> values = new ArrayList<>();
+            for (int col = 0; col < table.columns(); col += 1) {
+                values.add(table.get(row, col));
+            }
+            result.add(values);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSelect() {
+        Table table = sample();
+        List<Condition> conditions = Arrays.asList(
+            new Condition(new Column("group", table), "<", "5").bind(table));
+        int[] columns = {2, 1};
+        Table sequential = new Table(new String[] {"name", "group"});
+        ParallelScan.select(table, conditions, null, columns, sequential,
+                            Integer.MAX_VALUE);
+        Table parallel = new Table(new String[] {"name", "group"});
+        ParallelScan.select(table, conditions, null, columns, parallel, 1);
+        assertEquals(5000, parallel.size());
+        assertEquals(rows(sequential), rows(parallel));
+    }
+
+    @Test
+    public void testFilter() {
+        Table table = sample();
+        List<Condition> conditions = Arrays.asList(
+            new Condition(new Column("name", table), "=", "n7").bind(table));
+        int[] candidates = new int[30000];
+        for (int i = 0; i < candidates.length; i += 1) {
+            candidates[i] = 4 * i / 3;
+        }
+        ArrayList<Integer> expected = new ArrayList<>();
+        for (int row : candidates) {
+            if (row % 1000 == 7) {
+                expected.add(row);
+            }
+        }
+        assertEquals(expected,
+                     ParallelScan.filter(table, conditions, candidates, 1));
+        assertEquals(expected,
+                     ParallelScan.filter(table, conditions, candidates,
+                                         Integer.MAX_VALUE));
+    }
+}
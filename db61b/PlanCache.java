@@ -0,0 +1,88 @@
+package db61b;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The select clauses most recently executed on a Database, each parsed
+ *  into a Query and keyed by its normalized text: its tokens separated
+ *  by single blanks, with "?" in place of each literal.  Clauses that
+ *  differ only in their literals or layout thus share one Query, and a
+ *  client that issues the same kinds of select over and over has each
+ *  parsed only once.  When the cache is full, the least recently used
+ *  Query is evicted.  Since a Query refers to the Tables it selects
+ *  from, those that select from a table are invalidated when the
+ *  Database gives that table's name to another Table.
+ *
+ *  Like Database, a PlanCache is not safe for concurrent use.
+ *  @author andrew */
+class PlanCache {
+
+    /** Default maximum number of Queries kept.  It may be set with the
+     *  system property db61b.planCacheSize. */
+    static final int CAPACITY =
+        Integer.getInteger("db61b.planCacheSize", 256);
+
+    /** An empty cache holding at most CAPACITY Queries. */
+    PlanCache(int capacity) {
+        _capacity = capacity;
+        _queries = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Query> e) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /** Return the Query whose normalized text is KEY, or null if there
+     *  is none, making it the most recently used. */
+    Query get(String key) {
+        Query query = _queries.get(key);
+        if (query == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return query;
+    }
+
+    /** Record QUERY as the Query whose normalized text is KEY, evicting
+     *  the least recently used Query if that leaves too many. */
+    void put(String key, Query query) {
+        if (_capacity > 0) {
+            _queries.put(key, query);
+        }
+    }
+
+    /** Remove all Queries that select from a table named NAME. */
+    void invalidate(String name) {
+        Iterator<Query> queries = _queries.values().iterator();
+        while (queries.hasNext()) {
+            if (queries.next().refersTo(name)) {
+                queries.remove();
+            }
+        }
+    }
+
+    /** Return the number of Queries I hold. */
+    int size() {
+        return _queries.size();
+    }
+
+    /** Return the number of calls to get that found a Query. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of calls to get that found none. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Maximum number of Queries kept. */
+    private final int _capacity;
+    /** The Queries, by normalized text, least recently used first. */
+    private final LinkedHashMap<String, Query> _queries;
+    /** Numbers of successful and unsuccessful calls to get. */
+    private long _hits, _misses;
+}
@@ -0,0 +1,104 @@
+package db61b;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PlanCacheTest {
+
+    /** Return a Query selecting from tables named NAMES. */
+    private static Query query(String... names) {
+        ArrayList<String> tableNames = new ArrayList<>();
+        ArrayList<Table> tables = new ArrayList<>();
+        for (String name : names) {
+            tableNames.add(name);
+            tables.add(new Table(new String[] {"A"}));
+        }
+        ArrayList<String> columns = new ArrayList<>();
+        columns.add("A");
+        return new Query(columns, tableNames, tables);
+    }
+
+    /** Return a table named "people" with columns Name and Age. */
+    private static Table people(String... namesAndAges) {
+        Table table = new Table(new String[] {"Name", "Age"});
+        for (int i = 0; i < namesAndAges.length; i += 2) {
+            table.add(new String[] {namesAndAges[i], namesAndAges[i + 1]});
+        }
+        return table;
+    }
+
+    /** Return the output of the statements STATEMENTS executed in turn
+     *  on DATABASE. */
+    private static String run(Database database, String statements) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CommandInterpreter interpreter =
+            new CommandInterpreter(new Scanner(statements), null, output,
+                                   database);
+        while (interpreter.statement()) {
+            continue;
+        }
+        return output.toString();
+    }
+
+    @Test
+    public void testEviction() {
+        PlanCache cache = new PlanCache(2);
+        Query q1 = query("t"), q2 = query("t"), q3 = query("t");
+        cache.put("1", q1);
+        cache.put("2", q2);
+        assertSame(q1, cache.get("1"));
+        cache.put("3", q3);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("2"));
+        assertSame(q1, cache.get("1"));
+        assertSame(q3, cache.get("3"));
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testInvalidate() {
+        PlanCache cache = new PlanCache(10);
+        cache.put("1", query("t"));
+        cache.put("2", query("s", "t"));
+        cache.put("3", query("s"));
+        cache.invalidate("t");
+        assertNull(cache.get("1"));
+        assertNull(cache.get("2"));
+        assertNotNull(cache.get("3"));
+    }
+
+    @Test
+    public void testLiterals() {
+        Database database = new Database();
+        database.put("people", people("Ann", "30", "Bob", "40", "Cy", "50"));
+        String output =
+            run(database, "select Name from people where Age > '35';"
+                + "select  Name from people\nwhere Age > '45' ;");
+        assertEquals("Search results:\n  Bob \n  Cy \n"
+                     + "Search results:\n  Cy \n", output);
+        assertEquals(1, database.plans().size());
+        assertEquals(1, database.plans().hits());
+    }
+
+    @Test
+    public void testReplacedTable() {
+        Database database = new Database();
+        database.put("people", people("Ann", "30", "Bob", "40"));
+        run(database, "select Name from people where Age < '35';");
+        database.put("people", database.get("people"));
+        assertEquals(1, database.plans().size());
+        database.put("people", people("Dee", "20"));
+        assertEquals(0, database.plans().size());
+        assertEquals("Search results:\n  Dee \n",
+                     run(database,
+                         "select Name from people where Age < '35';"));
+    }
+}
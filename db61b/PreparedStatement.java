@@ -0,0 +1,121 @@
+package db61b;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+
+import static db61b.Utils.*;
+
+/** A select clause prepared for repeated execution by a program that
+ *  embeds a Database, as returned by Database.prepare.  The clause is
+ *  parsed and its names resolved once, when it is prepared; each "?"
+ *  in place of a literal is a parameter, numbered from 0 in order of
+ *  appearance, whose value is supplied with bind before each
+ *  execution.  For example,
+ *      PreparedStatement older =
+ *          database.prepare("select Name from titanic where Age > ?");
+ *      Cursor rows = older.bind(0, "60").execute();
+ *      while (rows.next()) {
+ *          ... rows.get("Name") ...
+ *      }
+ *  Values are given without quotes and, unlike literals, may contain
+ *  commas and quotes.  As with literals, leading and trailing
+ *  whitespace is ignored in comparisons, so that binding " 60 " is the
+ *  same as binding "60".  Bound values remain in effect for
+ *  subsequent executions until replaced.  If one of the tables the
+ *  clause selects from is replaced in the database (by loading it
+ *  again, for example), the clause is prepared again at its next
+ *  execution.
+ *
+ *  Like Database, a PreparedStatement is not safe for concurrent use.
+ *  @author andrew */
+public class PreparedStatement {
+
+    /** A statement executing the select clause TEXT on DATABASE. */
+    PreparedStatement(Database database, String text) {
+        _database = database;
+        _text = text;
+        prepare();
+        _bound = new String[_parameters.length];
+    }
+
+    /** Return the number of my parameters. */
+    public int parameters() {
+        return _parameters.length;
+    }
+
+    /** Make VALUE the value of parameter K, returning THIS. */
+    public PreparedStatement bind(int k, String value) {
+        if (k < 0 || k >= _bound.length) {
+            throw error("no parameter %d", k);
+        }
+        if (value == null) {
+            throw error("null value for parameter %d", k);
+        }
+        _bound[k] = value;
+        return this;
+    }
+
+    /** Unbind all of my parameters, returning THIS. */
+    public PreparedStatement clear() {
+        Arrays.fill(_bound, null);
+        return this;
+    }
+
+    /** Execute me with the values bound to my parameters, all of which
+     *  must be bound, and return a Cursor over the resulting rows. */
+    public Cursor execute() {
+        for (int k = 0; k < _bound.length; k += 1) {
+            if (_bound[k] == null) {
+                throw error("parameter %d is not bound", k);
+            }
+        }
+        if (!_query.current(_database)) {
+            prepare();
+        }
+        String[] values = _literals.clone();
+        for (int k = 0; k < _parameters.length; k += 1) {
+            values[_parameters[k]] = _bound[k];
+        }
+        return new Cursor(_interpreter.select(_query, values));
+    }
+
+    /** Parse my text into _query, and set _literals and _parameters
+     *  accordingly. */
+    private void prepare() {
+        _interpreter =
+            new CommandInterpreter(new Scanner(_text), null,
+                                   OutputStream.nullOutputStream(),
+                                   _database);
+        ArrayList<String> literals = new ArrayList<>();
+        _query = _interpreter.preparedClause(literals);
+        _literals = literals.toArray(new String[literals.size()]);
+        int n = 0;
+        _parameters = new int[_literals.length];
+        for (int k = 0; k < _literals.length; k += 1) {
+            if (_literals[k] == null) {
+                _parameters[n] = k;
+                n += 1;
+            }
+        }
+        _parameters = Arrays.copyOf(_parameters, n);
+    }
+
+    /** The database I select from. */
+    private final Database _database;
+    /** My select clause. */
+    private final String _text;
+    /** Interpreter that executes me. */
+    private CommandInterpreter _interpreter;
+    /** My select clause, parsed. */
+    private Query _query;
+    /** The values of _query's parameters that are literals in _text,
+     *  with null for each of my parameters. */
+    private String[] _literals;
+    /** The numbers of the parameters of _query that are my parameters,
+     *  in order. */
+    private int[] _parameters;
+    /** The values bound to my parameters, or null. */
+    private final String[] _bound;
+}
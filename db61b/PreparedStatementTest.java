@@ -0,0 +1,138 @@
+package db61b;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PreparedStatementTest {
+
+    /** Return a database holding a table people(Name, Age, Town) and a
+     *  table towns(Town, State). */
+    private static Database database() {
+        Database database = new Database();
+        Table people = new Table(new String[] {"Name", "Age", "Town"});
+        people.add(new String[] {"Cy", "50", "Berkeley"});
+        people.add(new String[] {"Ann", "30", "Reno"});
+        people.add(new String[] {"Bob", "40", "Berkeley"});
+        Table towns = new Table(new String[] {"Town", "State"});
+        towns.add(new String[] {"Berkeley", "CA"});
+        towns.add(new String[] {"Reno", "NV"});
+        database.put("people", people);
+        database.put("towns", towns);
+        return database;
+    }
+
+    /** Return the values of column TITLE in the rows of CURSOR. */
+    private static ArrayList<String> column(Cursor cursor, String title) {
+        ArrayList<String> values = new ArrayList<>();
+        while (cursor.next()) {
+            values.add(cursor.get(title));
+        }
+        return values;
+    }
+
+    @Test
+    public void testBind() {
+        PreparedStatement older = database()
+            .prepare("select Name, Age from people where Age > ?");
+        assertEquals(1, older.parameters());
+        Cursor rows = older.bind(0, "35").execute();
+        assertEquals(2, rows.rows());
+        assertEquals(2, rows.columns());
+        assertEquals("Age", rows.getTitle(1));
+        assertTrue(rows.next());
+        assertEquals("Bob", rows.get(0));
+        assertEquals("40", rows.get("Age"));
+        assertTrue(rows.next());
+        assertEquals("Cy", rows.get("Name"));
+        assertFalse(rows.next());
+        assertEquals("[Ann, Bob, Cy]",
+                     column(older.bind(0, "0").execute(), "Name")
+                     .toString());
+        assertEquals("[Ann, Bob, Cy]",
+                     column(older.execute(), "Name").toString());
+        assertEquals("[]",
+                     column(older.bind(0, "99").execute(), "Name")
+                     .toString());
+    }
+
+    @Test
+    public void testLiteralsAndJoin() {
+        PreparedStatement query = database()
+            .prepare("select Name, State from people, towns"
+                     + " where State = ? and Age < '45' and Name != ?;");
+        assertEquals(2, query.parameters());
+        assertEquals("[Bob]",
+                     column(query.bind(0, "CA").bind(1, "Al").execute(),
+                            "Name").toString());
+        assertEquals("[]",
+                     column(query.bind(1, "Bob").execute(), "Name")
+                     .toString());
+        assertEquals("[Bob]",
+                     column(query.bind(0, " CA\t").bind(1, "Al ")
+                            .execute(), "Name").toString());
+    }
+
+    @Test
+    public void testUnbound() {
+        PreparedStatement query = database()
+            .prepare("select Name from people where Age > ? and Age < ?");
+        query.bind(0, "1");
+        try {
+            query.execute();
+            fail("executed with an unbound parameter");
+        } catch (DBException e) {
+            assertEquals("parameter 1 is not bound", e.getMessage());
+        }
+        query.bind(1, "45").execute();
+        query.clear();
+        try {
+            query.execute();
+            fail("executed with an unbound parameter");
+        } catch (DBException e) {
+            assertEquals("parameter 0 is not bound", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReplacedTable() {
+        Database database = database();
+        PreparedStatement query =
+            database.prepare("select Name from people where Age > ?");
+        query.bind(0, "45");
+        assertEquals("[Cy]", column(query.execute(), "Name").toString());
+        Table people = new Table(new String[] {"Age", "Name"});
+        people.add(new String[] {"60", "Dee"});
+        database.put("people", people);
+        assertEquals("[Dee]", column(query.execute(), "Name").toString());
+    }
+
+    @Test
+    public void testErrors() {
+        Database database = database();
+        try {
+            database.prepare("select Name from people where Age > ? x");
+            fail("prepared a malformed clause");
+        } catch (DBException e) {
+            assertEquals("unexpected token: 'x'", e.getMessage());
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CommandInterpreter interpreter =
+            new CommandInterpreter(new Scanner("select Name from people"
+                                               + " where Age > ?;"),
+                                   null, output, database);
+        try {
+            interpreter.statement();
+            fail("executed a statement with a parameter");
+        } catch (DBException e) {
+            assertEquals("parameters are allowed only in prepared "
+                         + "statements", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package db61b;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/** Measurements of the execution of one select, as made for an "explain
+ *  analyze" statement: a tree of Nodes, one for each operator that
+ *  executed the select (scans of tables, filters, joins, and the final
+ *  projection), each recording the rows that flowed into and out of
+ *  it, and the time it took and the memory it allocated.
+ *
+ *  Since the operators of a join pipeline pull their tuples from their
+ *  inputs (see Operator), their work is interleaved.  A Node measures
+ *  everything done between its begin() and end(), including the work
+ *  of any other Node measured in between, which is then subtracted, so
+ *  that each Node reports the time and memory of its own operator
+ *  alone, and these add up (with parsing and the like) to the total for
+ *  the select.  Pipeline operators are measured by wrapping each in an
+ *  Operator.Measured that measures each request for a tuple, which
+ *  costs some time of its own.  Memory is counted with the HotSpot
+ *  extension of ThreadMXBean, when available, and only for the thread
+ *  executing the select, so work done by other threads for parallel
+ *  scans and joins appears in times but not in memory.
+ *  @author andrew */
+class Profile {
+
+    /** A new, empty profile, which starts measuring the whole
+     *  select. */
+    Profile() {
+        _startNanos = System.nanoTime();
+        _startBytes = allocated();
+    }
+
+    /** Record that TABLE is called NAME in the select. */
+    void name(Table table, String name) {
+        _names.put(table, name);
+    }
+
+    /** Return what TABLE is called in the select. */
+    String name(Table table) {
+        String name = _names.get(table);
+        return name == null ? "?" : name;
+    }
+
+    /** Return a new Node, as yet undescribed, whose inputs are measured
+     *  by INPUTS, and which has begun measuring. */
+    Node begin(Node... inputs) {
+        Node node = new Node(inputs);
+        node.begin();
+        return node;
+    }
+
+    /** Make ROOT the Node of the last operator of the select. */
+    void setRoot(Node root) {
+        _root = root;
+    }
+
+    /** Stop measuring the whole select, and print the tree of its
+     *  operators on OUTPUT, one to a line, with each operator's inputs
+     *  indented below it. */
+    void print(PrintWriter output) {
+        long nanos = System.nanoTime() - _startNanos;
+        long bytes = _startBytes < 0 ? -1 : allocated() - _startBytes;
+        if (_root != null) {
+            _root.print(output, "  ");
+        }
+        output.printf("Total time %.3f ms%s%n", nanos / 1e6,
+                      bytes < 0 ? "" : ", allocated " + bytes + " bytes");
+    }
+
+    /** Return a description of a scan of the table called NAME for the
+     *  rows that satisfy CONDITIONS, considering only CANDIDATES, if they
+     *  are not null, as found in an index. */
+    static String scan(String name, List<Condition> conditions,
+                       int[] candidates) {
+        String description = "Scan " + name;
+        if (candidates != null) {
+            description += " using index";
+        }
+        if (!conditions.isEmpty()) {
+            description += ", filter: " + describe(conditions);
+        }
+        return description;
+    }
+
+    /** Return CONDITIONS in textual form, separated by "and". */
+    static String describe(List<Condition> conditions) {
+        StringBuilder result = new StringBuilder();
+        for (Condition cond : conditions) {
+            if (result.length() > 0) {
+                result.append(" and ");
+            }
+            result.append(cond);
+        }
+        return result.toString();
+    }
+
+    /** Return the number of bytes allocated so far by the current
+     *  thread, or -1 if that is unknown. */
+    private static long allocated() {
+        if (THREADS == null) {
+            return -1;
+        }
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /** The measurements of one operator. */
+    class Node {
+
+        /** A Node for an operator whose inputs are measured by
+         *  INPUTS. */
+        private Node(Node... inputs) {
+            for (Node input : inputs) {
+                _inputs.add(input);
+            }
+        }
+
+        /** Make DESCRIPTION the description of my operator. */
+        void describe(String description) {
+            _description = description;
+        }
+
+        /** Start measuring. */
+        void begin() {
+            _active.push(this);
+            _begunNanos = System.nanoTime();
+            _begunBytes = allocated();
+        }
+
+        /** Stop measuring, adding the time and memory used since the
+         *  last begin() to my totals, and subtracting them from those of
+         *  the Node, if any, that was measuring when I began. */
+        void end() {
+            long nanos = System.nanoTime() - _begunNanos;
+            long bytes = _begunBytes < 0 ? 0 : allocated() - _begunBytes;
+            _active.pop();
+            _nanos += nanos;
+            _bytes += bytes;
+            Node outer = _active.peek();
+            if (outer != null) {
+                outer._nanos -= nanos;
+                outer._bytes -= bytes;
+            }
+        }
+
+        /** Record that my operator considered N rows, in place of the
+         *  default: the total of the rows its inputs produced. */
+        void setRowsIn(long n) {
+            _rowsIn = n;
+        }
+
+        /** Record that my operator produced N more rows. */
+        void addRowsOut(long n) {
+            _rowsOut += n;
+        }
+
+        /** Return the number of rows my operator considered. */
+        long rowsIn() {
+            if (_rowsIn >= 0) {
+                return _rowsIn;
+            }
+            long total = 0;
+            for (Node input : _inputs) {
+                total += input._rowsOut;
+            }
+            return total;
+        }
+
+        /** Return the number of rows my operator produced. */
+        long rowsOut() {
+            return _rowsOut;
+        }
+
+        /** Print me on OUTPUT indented by INDENT, followed by my inputs
+         *  indented further. */
+        void print(PrintWriter output, String indent) {
+            output.printf("%s%s  (rows in %d, out %d; %.3f ms%s)%n", indent,
+                          _description, rowsIn(), _rowsOut, _nanos / 1e6,
+                          _startBytes < 0 ? "" : "; " + _bytes + " bytes");
+            for (Node input : _inputs) {
+                input.print(output, indent + "  ");
+            }
+        }
+
+        /** What my operator does. */
+        private String _description = "";
+        /** The Nodes of my operator's inputs. */
+        private final ArrayList<Node> _inputs = new ArrayList<>();
+        /** Number of rows considered, or -1 for the default. */
+        private long _rowsIn = -1;
+        /** Number of rows produced. */
+        private long _rowsOut;
+        /** Time taken by my operator alone, in nanoseconds. */
+        private long _nanos;
+        /** Memory allocated by my operator alone, in bytes. */
+        private long _bytes;
+        /** Values of System.nanoTime() and allocated() at the last
+         *  begin(). */
+        private long _begunNanos, _begunBytes;
+    }
+
+    /** Source of the numbers of bytes allocated by threads, or null if
+     *  this JVM cannot count them. */
+    private static final com.sun.management.ThreadMXBean THREADS;
+
+    static {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean counter = null;
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            counter = (com.sun.management.ThreadMXBean) threads;
+            if (!counter.isThreadAllocatedMemorySupported()) {
+                counter = null;
+            } else if (!counter.isThreadAllocatedMemoryEnabled()) {
+                counter.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        THREADS = counter;
+    }
+
+    /** Values of System.nanoTime() and allocated() when I was
+     *  created. */
+    private final long _startNanos, _startBytes;
+    /** The Nodes now measuring, innermost first. */
+    private final ArrayDeque<Node> _active = new ArrayDeque<>();
+    /** The Node of the last operator of the select. */
+    private Node _root;
+    /** What each table is called in the select. */
+    private final IdentityHashMap<Table, String> _names =
+        new IdentityHashMap<>();
+}
@@ -0,0 +1,131 @@
+package db61b;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProfileTest {
+
+    /** Return a database holding a table students(SID, Name) of four
+     *  students and a table enrolled(SID, CCN) of six enrollments. */
+    private static Database database() {
+        Database database = new Database();
+        Table students = new Table(new String[] {"SID", "Name"});
+        for (int i = 0; i < 4; i += 1) {
+            students.add(new String[] {"10" + i, "Name" + i});
+        }
+        Table enrolled = new Table(new String[] {"SID", "CCN"});
+        for (int i = 0; i < 6; i += 1) {
+            enrolled.add(new String[] {"10" + (i % 3), "2100" + i});
+        }
+        database.put("students", students);
+        database.put("enrolled", enrolled);
+        return database;
+    }
+
+    /** Return the output of STATEMENT executed on DATABASE, one line per
+     *  element, with the measurements of time and memory removed. */
+    private static ArrayList<String> run(Database database,
+                                         String statement) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CommandInterpreter interpreter =
+            new CommandInterpreter(new Scanner(statement), null, output,
+                                   database);
+        interpreter.statement();
+        ArrayList<String> lines = new ArrayList<>();
+        for (String line : output.toString().split("\n")) {
+            lines.add(line.replaceAll("; [0-9.]+ ms(; -?[0-9]+ bytes)?\\)",
+                                      ")"));
+        }
+        return lines;
+    }
+
+    @Test
+    public void testSingleTable() {
+        ArrayList<String> lines =
+            run(database(), "explain analyze select Name from students"
+                + " where SID > '101';");
+        assertEquals("Query plan:", lines.get(0));
+        assertEquals("  Project Name  (rows in 2, out 2)", lines.get(1));
+        assertEquals("    Scan students, filter: SID > '101'"
+                     + "  (rows in 4, out 2)", lines.get(2));
+        assertTrue(lines.get(3).startsWith("Total time "));
+        assertEquals(4, lines.size());
+    }
+
+    @Test
+    public void testIndexedScan() {
+        Database database = database();
+        database.get("students").createIndex(0);
+        ArrayList<String> lines =
+            run(database, "explain analyze select Name from students"
+                + " where SID = '102';");
+        assertEquals("    Scan students using index, filter: SID = '102'"
+                     + "  (rows in 1, out 1)", lines.get(2));
+    }
+
+    @Test
+    public void testJoin() {
+        ArrayList<String> lines =
+            run(database(), "explain analyze select Name, CCN"
+                + " from students, enrolled where CCN > '21000'"
+                + " and Name != CCN;");
+        assertEquals("Query plan:", lines.get(0));
+        assertEquals("  Project Name, CCN  (rows in 5, out 5)",
+                     lines.get(1));
+        assertEquals("    Filter: Name != CCN  (rows in 5, out 5)",
+                     lines.get(2));
+        assertEquals("      Hash join on SID  (rows in 9, out 5)",
+                     lines.get(3));
+        assertEquals("        Scan enrolled, filter: CCN > '21000'"
+                     + "  (rows in 6, out 5)", lines.get(4));
+        assertEquals("        Scan students  (rows in 4, out 4)",
+                     lines.get(5));
+        assertTrue(lines.get(6).startsWith("Total time "));
+    }
+
+    @Test
+    public void testSelfTime() {
+        Profile profile = new Profile();
+        Profile.Node inner = profile.begin();
+        inner.end();
+        Profile.Node outer = profile.begin(inner);
+        inner.begin();
+        busy(1000000);
+        inner.end();
+        outer.end();
+        inner.describe("inner");
+        outer.describe("outer");
+        profile.setRoot(outer);
+        StringWriter text = new StringWriter();
+        PrintWriter output = new PrintWriter(text);
+        profile.print(output);
+        output.flush();
+        String[] lines = text.toString().split("\n");
+        assertTrue(lines[0], millis(lines[0]) < millis(lines[1]));
+    }
+
+    /** Return the number of milliseconds reported in LINE. */
+    private static double millis(String line) {
+        String time = line.replaceAll(".*; ([0-9.]+) ms.*", "$1");
+        return Double.parseDouble(time);
+    }
+
+    /** Spin for N iterations. */
+    private static void busy(int n) {
+        long x = 0;
+        for (int i = 0; i < n; i += 1) {
+            x = x * 31 + i;
+        }
+        _sink = x;
+    }
+
+    /** Keeps busy()'s work from being optimized away. */
+    private static long _sink;
+}
@@ -0,0 +1,135 @@
+package db61b;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A select clause, parsed and with its table and column names resolved,
+ *  in which each literal (or "?", in a PreparedStatement) is a
+ *  parameter whose value is supplied when the clause is executed.  A
+ *  Query may therefore be executed any number of times, with different
+ *  values, without being parsed again (see PlanCache).  Only the work
+ *  that does not depend on the values is done once: the conditions are
+ *  made afresh, with the values, for each execution, and the choice of
+ *  indexes and join order, which depend on how selective the values
+ *  make the conditions, is made when the Query is executed (see
+ *  CommandInterpreter.select).
+ *
+ *  A Query refers to the Tables that its table names designated when it
+ *  was parsed, and so is no longer valid once any of those names is
+ *  given to another Table.
+ *  @author andrew */
+class Query {
+
+    /** A Query selecting the columns named COLUMNNAMES from TABLES, whose
+     *  names are TABLENAMES, with no conditions (as yet). */
+    Query(List<String> columnNames, List<String> tableNames,
+          List<Table> tables) {
+        _columnNames = new ArrayList<>(columnNames);
+        _tableNames = new ArrayList<>(tableNames);
+        _tables = new ArrayList<>(tables);
+    }
+
+    /** Add the condition COL1 RELATION COL2, where RELATION is one of the
+     *  strings "<", ">", "<=", ">=", "=", or "!=". */
+    void addCondition(Column col1, String relation, Column col2) {
+        _comparisons.add(new Comparison(col1, relation, col2, -1));
+    }
+
+    /** Add the condition COL1 RELATION 'V', where V is the value of my
+     *  next parameter, and return the number of that parameter (from
+     *  0). */
+    int addCondition(Column col1, String relation) {
+        _comparisons.add(new Comparison(col1, relation, null, _parameters));
+        _parameters += 1;
+        return _parameters - 1;
+    }
+
+    /** Return the number of my parameters. */
+    int parameters() {
+        return _parameters;
+    }
+
+    /** Return the names of the columns I select.  The caller must not
+     *  modify the result. */
+    List<String> columnNames() {
+        return _columnNames;
+    }
+
+    /** Return the tables I select from, in order.  The caller must not
+     *  modify the result. */
+    ArrayList<Table> tables() {
+        return _tables;
+    }
+
+    /** Return the names of tables(), in order.  The caller must not
+     *  modify the result. */
+    List<String> tableNames() {
+        return _tableNames;
+    }
+
+    /** Return true iff I select from a table named NAME. */
+    boolean refersTo(String name) {
+        return _tableNames.contains(name);
+    }
+
+    /** Return true iff each of my tables is still the one its name
+     *  designates in DATABASE. */
+    boolean current(Database database) {
+        for (int k = 0; k < _tables.size(); k += 1) {
+            if (database.get(_tableNames.get(k)) != _tables.get(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return my conditions, with VALUES as the values of my parameters,
+     *  in order.  VALUES must have exactly parameters() elements. */
+    ArrayList<Condition> conditions(String[] values) {
+        assert values.length == _parameters;
+        ArrayList<Condition> result = new ArrayList<>();
+        for (Comparison comp : _comparisons) {
+            if (comp._parameter == -1) {
+                result.add(new Condition(comp._col1, comp._relation,
+                                         comp._col2));
+            } else {
+                result.add(new Condition(comp._col1, comp._relation,
+                                         values[comp._parameter]));
+            }
+        }
+        return result;
+    }
+
+    /** One of my conditions, without the value of its parameter. */
+    private static class Comparison {
+
+        /** The condition COL1 RELATION COL2, or, if COL2 is null, COL1
+         *  RELATION the value of parameter PARAMETER. */
+        Comparison(Column col1, String relation, Column col2,
+                   int parameter) {
+            _col1 = col1;
+            _relation = relation;
+            _col2 = col2;
+            _parameter = parameter;
+        }
+
+        /** The columns compared (_col2 is null if the second operand is
+         *  a parameter). */
+        private final Column _col1, _col2;
+        /** The relation. */
+        private final String _relation;
+        /** The number of the parameter compared, or -1. */
+        private final int _parameter;
+    }
+
+    /** Names of the columns selected. */
+    private final ArrayList<String> _columnNames;
+    /** Names of the tables selected from. */
+    private final ArrayList<String> _tableNames;
+    /** The tables selected from. */
+    private final ArrayList<Table> _tables;
+    /** My conditions. */
+    private final ArrayList<Comparison> _comparisons = new ArrayList<>();
+    /** Number of parameters. */
+    private int _parameters;
+}
@@ -7,13 +7,18 @@
 // solutions.*/
 package db61b;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static db61b.Utils.*;
 
@@ -21,9 +26,22 @@ import static db61b.Utils.*;
  *  @author P. N. Hilfinger
  */
 class Table {
+    /** Size in bytes at or above which readTable parses a .db file
+     *  in parallel. */
+    static final long PARALLEL_LOAD_SIZE = 16L << 20;
+
     /** A new Table whose columns are given by COLUMNTITLES, which may
      *  not contain duplicate names. */
     Table(String[] columnTitles) {
+        this(columnTitles, newColumns(columnTitles.length), null);
+    }
+
+    /** A new Table whose columns are titled COLUMNTITLES, which may not
+     *  contain duplicate names, and hold the values in COLUMNS, which
+     *  must describe distinct rows.  If INDEX is not null, it supplies,
+     *  when first needed, the row numbers of COLUMNS in lexicographic
+     *  order of the rows, as for index(). */
+    Table(String[] columnTitles, ValueList[] columns, Supplier<int[]> index) {
         if (columnTitles.length == 0) {
             throw error("table must have at least one column");
         }
@@ -41,12 +59,22 @@ class Table {
 
 
         _titles = columnTitles;
-        _columns = new ValueList[_rowSize];
-        for (int i = 0; i < _rowSize; i++) {
-            _columns[i] = new ValueList();
-        }
+        _columns = columns;
+        _storedIndex = index;
+        _distinct = new int[_rowSize];
+        _distinctSize = new int[_rowSize];
+        Arrays.fill(_distinctSize, -1);
+
 
+    }
 
+    /** Return N new, empty columns. */
+    private static ValueList[] newColumns(int n) {
+        ValueList[] columns = new ValueList[n];
+        for (int i = 0; i < n; i++) {
+            columns[i] = new DictionaryList();
+        }
+        return columns;
     }
 
     /** A new Table whose columns are give by COLUMNTITLES. */
@@ -89,6 +117,22 @@ class Table {
         return _columns[0].size();
     }
 
+    /** Return the number of distinct values in column number COL
+     *  (0 <= COL < columns()).  The count is remembered until I next
+     *  acquire a row. */
+    public int distinctValues(int col) {
+        if (_distinctSize[col] != size()) {
+            _distinct[col] = _columns[col].distinctValues();
+            _distinctSize[col] = size();
+        }
+        return _distinct[col];
+    }
+
+    /** Return column number COL (0 <= COL < columns()). */
+    ValueList column(int col) {
+        return _columns[col];
+    }
+
     /** Return the value of column number COL (0 <= COL < columns())
      *  of record number ROW (0 <= ROW < size()). */
     public String get(int row, int col) {
@@ -108,58 +152,254 @@ class Table {
 
     /** Add a new row whose column values are VALUES to me if no equal
      *  row already exists.  Return true if anything was added,
-     *  false otherwise. */
+     *  false otherwise.  VALUES may not contain null. */
     public boolean add(String[] values) {
-
-        for (int i = 0; i < _index.size(); i++) {
-            int c = compareNewRow(_index.get(i), values);
-            if (c == 0) {
-                return false;
-            } else if (c > 0) {
-                addHelper(values);
-                _index.add(i, size() - 1);
-                return true;
+        if (values.length != _columns.length) {
+            System.out.println("different sizes");
+            return false;
+        }
+        for (String value : values) {
+            if (value == null) {
+                throw error("missing value in row");
             }
         }
-        addHelper(values);
+        return add(values, rowHash(values));
+    }
 
-        _index.add(size() - 1, size() - 1);
+    /** Add a new row whose column values are VALUES, which must have
+     *  one value per column and whose rowHash is HASH, to me if no
+     *  equal row already exists.  Return true if anything was added,
+     *  false otherwise. */
+    boolean add(String[] values, long hash) {
+        hashRows();
+        int slot = findSlot(values, hash);
+        if (_slots[slot] != 0) {
+            return false;
+        }
+        addHelper(values);
+        _slots[slot] = size();
+        _hashes[slot] = hash;
+        _hashed = size();
+        if (2 * size() > _slots.length) {
+            rehash();
+        }
         return true;
-
     }
 
     /**
-     * Helper for add.
+     * Helper for add.  Appends VALUES to the end of my columns without
+     * touching _index or the row hash table.
      * @param values values to be added
      */
     private void addHelper(String[] values) {
-        if (values.length == _columns.length) {
+        for (int i = 0; i < columns(); i++) {
+            if (!_columns[i].accepts(values[i])) {
+                _columns[i] = DictionaryList.copyOf(_columns[i]);
+            }
+            _columns[i].add(values[i]);
 
+        }
+        for (ColumnIndex index : _indexes) {
+            index.add(size() - 1);
+        }
+    }
 
-            for (int i = 0; i < columns(); i++) {
+    /** Create an index on column number COL, which must not already
+     *  have one. */
+    void createIndex(int col) {
+        if (columnIndex(col) != null) {
+            throw error("column %s is already indexed", _titles[col]);
+        }
+        _indexes.add(new ColumnIndex(this, col));
+    }
 
-                _columns[i].add(values[i]);
+    /** Return my index on column number COL, or null if it has none. */
+    ColumnIndex columnIndex(int col) {
+        for (ColumnIndex index : _indexes) {
+            if (index.column() == col) {
+                return index;
+            }
+        }
+        return null;
+    }
 
+    /** Return the numbers, in increasing order, of a set of my rows that
+     *  includes all that satisfy CONDITIONS, which must be bound to me,
+     *  found by looking up in my indexes whichever of CONDITIONS they
+     *  can answer, or null if they can answer none of them.  The caller
+     *  must not modify the result. */
+    int[] lookup(List<Condition> conditions) {
+        int[] best = null;
+        for (Condition cond : conditions) {
+            for (ColumnIndex index : _indexes) {
+                if (index.column() == cond.literalColumn()) {
+                    int[] rows = index.lookup(cond);
+                    if (rows != null
+                        && (best == null || rows.length < best.length)) {
+                        best = rows;
+                    }
+                }
             }
-        } else {
-            System.out.println("different sizes");
         }
+        return best;
     }
 
-    /** Return <0, 0, or >0 depending on whether the kth row
-     *  is less than, equal to, or greater than that formed from elememts
-     *  in the new row. This method ignores
-     *  the _index.
-     *  @param k kth row
-     *  @param newRow new row to be inserted*/
-    private int compareNewRow(int k, String[] newRow) {
+    /** Store as a NumericList each of my columns that holds only numbers
+     *  and that has so many distinct values that dictionary encoding it
+     *  saves little.  Used once a table has been read in. */
+    void compact() {
+        for (int i = 0; i < columns(); i++) {
+            ValueList column = _columns[i];
+            if (column.type().numeric() && column.encoded()
+                && 2 * column.dictionarySize() > column.size()
+                && printsExactly(column)) {
+                _columns[i] = NumericList.copyOf(column);
+            }
+        }
+    }
+
+    /** Return true iff every value in the dictionary-encoded, numeric
+     *  COLUMN is the printed form of a number of COLUMN's type, so that
+     *  a NumericList can reproduce it.  Only a DOUBLE column can fail,
+     *  since it may also hold integers, which print differently. */
+    private static boolean printsExactly(ValueList column) {
+        if (column.type() != ValueList.Type.DOUBLE) {
+            return true;
+        }
+        for (int c = 0; c < column.dictionarySize(); c += 1) {
+            if (ValueList.Type.of(column.valueOf(c))
+                != ValueList.Type.DOUBLE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return a 64-bit hash of the row VALUES. */
+    static long rowHash(String[] values) {
+        long h = 0xcbf29ce484222325L;
+        for (String value : values) {
+            h = (h ^ value.hashCode()) * 0x100000001b3L;
+        }
+        return h ^ (h >>> 29);
+    }
+
+    /** Return the rowHash of row K. */
+    private long rowHash(int k) {
+        long h = 0xcbf29ce484222325L;
+        for (ValueList column : _columns) {
+            h = (h ^ column.get(k).hashCode()) * 0x100000001b3L;
+        }
+        return h ^ (h >>> 29);
+    }
+
+    /** Enter into the row hash table any rows that are not yet in it.
+     *  Such rows come from a Table constructed from columns, whose rows
+     *  are known to be distinct already. */
+    private void hashRows() {
+        while (_hashed < size()) {
+            while (2 * (_hashed + 1) > _slots.length) {
+                rehash();
+            }
+            long hash = rowHash(_hashed);
+            int mask = _slots.length - 1;
+            int slot = (int) hash & mask;
+            while (_slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            _hashed += 1;
+            _slots[slot] = _hashed;
+            _hashes[slot] = hash;
+        }
+    }
+
+    /** Return the position in _slots of the row equal to VALUES, whose
+     *  hash is HASH, or of the empty slot at which it belongs if I have
+     *  no such row.  Rows whose hashes match are compared value by
+     *  value, so hash collisions never merge distinct rows. */
+    private int findSlot(String[] values, long hash) {
+        int mask = _slots.length - 1;
+        int slot = (int) hash & mask;
+        while (_slots[slot] != 0) {
+            if (_hashes[slot] == hash && rowEquals(_slots[slot] - 1, values)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Return true iff row K holds exactly VALUES. */
+    private boolean rowEquals(int k, String[] values) {
         for (int i = 0; i < _columns.length; i += 1) {
-            int c = _columns[i].get(k).compareTo(newRow[i]);
-            if (c != 0) {
-                return c;
+            if (!_columns[i].get(k).equals(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Double the size of the row hash table. */
+    private void rehash() {
+        int[] oldSlots = _slots;
+        long[] oldHashes = _hashes;
+        _slots = new int[2 * oldSlots.length];
+        _hashes = new long[_slots.length];
+        int mask = _slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i += 1) {
+            if (oldSlots[i] != 0) {
+                int slot = (int) oldHashes[i] & mask;
+                while (_slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                _slots[slot] = oldSlots[i];
+                _hashes[slot] = oldHashes[i];
             }
         }
-        return 0;
+    }
+
+    /** Return the numbers of my rows in lexicographic order of the rows
+     *  they denote, after merging into _index any rows added since it
+     *  was last brought up to date.  The caller must not modify the
+     *  result. */
+    int[] index() {
+        if (_storedIndex != null) {
+            _index = _storedIndex.get();
+            _storedIndex = null;
+        }
+        int indexed = _index.length;
+        if (indexed < size()) {
+            Integer[] pending = new Integer[size() - indexed];
+            for (int i = 0; i < pending.length; i += 1) {
+                pending[i] = indexed + i;
+            }
+            Arrays.sort(pending, this::compareRows);
+
+            int[] merged = new int[size()];
+            int i, j, k;
+            i = j = k = 0;
+            while (i < indexed && j < pending.length) {
+                if (compareRows(_index[i], pending[j]) < 0) {
+                    merged[k++] = _index[i++];
+                } else {
+                    merged[k++] = pending[j++];
+                }
+            }
+            while (i < indexed) {
+                merged[k++] = _index[i++];
+            }
+            while (j < pending.length) {
+                merged[k++] = pending[j++];
+            }
+            _index = merged;
+        }
+        return _index;
+    }
+
+    /** Return true iff index() would return without sorting any
+     *  rows. */
+    boolean indexed() {
+        return _storedIndex != null || _index.length == size();
     }
 
     /** Add a new row whose column values are extracted by COLUMNS from
@@ -172,32 +412,44 @@ class Table {
     }
 
     /** Read the contents of the file NAME.db, and return as a Table.
-     *  Format errors in the .db file cause a DBException. */
+     *  The file may be comma-separated text or in the binary format of
+     *  ColumnStore.  Format errors in the .db file cause a DBException. */
     static Table readTable(String name) {
-        BufferedReader input;
+        if (ColumnStore.isColumnar(name)) {
+            return ColumnStore.readTable(name);
+        }
+        File file = new File(name + ".db");
+        if (file.length() >= PARALLEL_LOAD_SIZE
+            && Runtime.getRuntime().availableProcessors() > 1) {
+            return ParallelReader.readTable(name,
+                                            ParallelReader.CHUNK_SIZE);
+        }
+        CSVReader input;
         Table table;
         input = null;
         table = null;
         String[] rowArray;
-        String rowCSV;
         try {
-            input = new BufferedReader(new FileReader(name + ".db"));
-            String header = input.readLine();
-            if (header == null) {
+            input = new CSVReader(new FileReader(name + ".db",
+                                                 StandardCharsets.UTF_8));
+            String[] columnNames = input.next();
+            if (columnNames == null) {
                 throw error("missing header in DB file");
             }
-            String[] columnNames = header.split(",");
 
-            table = new Table(columnNames);
+            table = new Table(columnNames.clone());
 
             while (true) {
-                rowCSV = input.readLine();
-                if (rowCSV == null) {
+                rowArray = input.next();
+                if (rowArray == null) {
                     break;
                 }
-                rowArray = rowCSV.split(",");
+                if (rowArray.length != table.columns()) {
+                    throw CSVReader.wrongFieldCount(name);
+                }
                 table.add(rowArray);
             }
+            table.compact();
 
         } catch (FileNotFoundException e) {
             throw error("could not find %s.db", name);
@@ -215,47 +467,52 @@ class Table {
         return table;
     }
 
-    /** Write the contents of TABLE into the file NAME.db. Any I/O errors
-     *  cause a DBException. */
+    /** Write the contents of TABLE into the file NAME.db, as
+     *  comma-separated text (see CSVWriter) with the rows in
+     *  lexicographic order. Any I/O errors cause a DBException.  The
+     *  contents go first to a temporary file, which is forced to disk
+     *  and then atomically replaces NAME.db, so that a failure or crash
+     *  part way leaves any previous NAME.db intact.  (NAME.db may also
+     *  be the very file from which a memory-mapped table, possibly this
+     *  one, is reading.) */
     void writeTable(String name) {
-        PrintStream output;
-        output = null;
+        File temp = new File(name + ".db.tmp");
         try {
-            String sep;
-            sep = "";
-            output = new PrintStream(name + ".db");
-
-            for (int i = 0; i < columns() - 1; i++) {
-                output.print(getTitle(i) + "," + sep);
-            }
-            output.println(getTitle(columns() - 1));
-
-            for (int row = 0; row < size(); row++) {
-                for (int col = 0; col < columns() - 1; col++) {
-                    output.print(get(row, col) + "," + sep);
+            try (FileOutputStream file = new FileOutputStream(temp)) {
+                CSVWriter output = new CSVWriter(
+                    new OutputStreamWriter(file, StandardCharsets.UTF_8));
+                for (String title : _titles) {
+                    output.write(title);
+                }
+                output.endRecord();
+                for (int row : index()) {
+                    for (ValueList column : _columns) {
+                        output.write(column.get(row));
+                    }
+                    output.endRecord();
                 }
-                output.println(get(row, columns() - 1));
+                output.flush();
+                file.getFD().sync();
             }
-
+            replaceFile(temp.getPath(), name + ".db");
         } catch (IOException e) {
+            temp.delete();
             throw error("trouble writing to %s.db", name);
-        } finally {
-            if (output != null) {
-                output.close();
-            }
         }
     }
 
-    /** Print my contents on the standard output, separated by spaces
-     *  and indented by two spaces. */
-    void print() {
-
-        for (int i : _index) {
-            System.out.print("  ");
+    /** Print my contents on OUTPUT, one row to a line in lexicographic
+     *  order, separated by spaces and indented by two spaces.  OUTPUT
+     *  is not flushed, so that a large table is written in a few large
+     *  pieces when OUTPUT is buffered. */
+    void print(PrintWriter output) {
+        for (int i : index()) {
+            output.write("  ");
             for (ValueList column : _columns) {
-                System.out.print(column.get(i) + " ");
+                output.write(column.get(i));
+                output.write(' ');
             }
-            System.out.println();
+            output.println();
         }
     }
 
@@ -305,36 +562,52 @@ class Table {
         return true;
     }
 
-    /** A class that is essentially ArrayList<String>.  For technical reasons,
-     *  we need to encapsulate ArrayList<String> like this because the
-     *  underlying design of Java does not properly distinguish between
-     *  different kinds of ArrayList at runtime (e.g., if you have a
-     *  variable of type Object that was created from an ArrayList, there is
-     *  no way to determine in general whether it is an ArrayList<String>,
-     *  ArrayList<Integer>, or ArrayList<Object>).  This leads to annoying
-     *  compiler warnings.  The trick of defining a new type avoids this
-     *  issue. */
-    private static class ValueList extends ArrayList<String> {
-    }
-
     /** My column titles. */
     private final String[] _titles;
     /** My columns. Row i consists of _columns[k].get(i) for all k. */
     private final ValueList[] _columns;
 
     /** Rows in the database are supposed to be sorted. To do so, we
-     *  have a list whose kth element is the index in each column
+     *  have an array whose kth element is the index in each column
      *  of the value of that column for the kth row in lexicographic order.
      *  That is, the first row (smallest in lexicographic order)
-     *  is at position _index.get(0) in _columns[0], _columns[1], ...
-     *  and the kth row in lexicographic order in at position _index.get(k).
-     *  When a new row is inserted, insert its index at the appropriate
-     *  place in this list.
+     *  is at position _index[0] in _columns[0], _columns[1], ...
+     *  and the kth row in lexicographic order in at position _index[k].
+     *  The array is brought up to date lazily, by index(), only when
+     *  something needs the rows in order: rows added since then are
+     *  sorted among themselves and merged in, so that a burst of N
+     *  insertions costs O(N lg N) comparisons however it is
+     *  interleaved with output.  Rows _index.length and beyond have not
+     *  been entered yet.
      *  (Alternatively, we could simply keep each column in the proper order
      *  so that we would not need _index.  But that would mean that inserting
      *  a new row would require rearranging _rowSize lists (each list in
      *  _columns) rather than just one. */
-    private final ArrayList<Integer> _index = new ArrayList<>();
+    private int[] _index = new int[0];
+    /** If not null, supplies the initial value of _index, for a table
+     *  whose order was computed before it was constructed. */
+    private Supplier<int[]> _storedIndex;
+
+    /** Open-addressed hash table of my rows, used by add to detect
+     *  duplicates in expected constant time.  Each nonzero _slots[k]
+     *  is one more than a row number, and _hashes[k] is the rowHash of
+     *  that row.  The table is kept at most half full, and its length
+     *  is always a power of 2.  Like _index, it may lag behind my
+     *  columns, and is brought up to date (by hashRows) before use. */
+    private int[] _slots = new int[16];
+    /** Row hashes corresponding to _slots. */
+    private long[] _hashes = new long[16];
+    /** Number of rows (0 .. _hashed-1) already in the row hash table. */
+    private int _hashed;
+
+    /** My indexes, made by createIndex. */
+    private final ArrayList<ColumnIndex> _indexes = new ArrayList<>();
+
+    /** Cached results of distinctValues, by column. */
+    private final int[] _distinct;
+    /** The value of size() at which each entry of _distinct was
+     *  computed, or -1 if it never was. */
+    private final int[] _distinctSize;
 
     /** My number of rows (redundant, but convenient). */
     private int _size;
@@ -1,7 +1,15 @@
 package db61b;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Scanner;
+
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TableTest {
 
@@ -83,4 +91,114 @@ public class TableTest {
         assertEquals("4", table2.get(1, 2));
         assertEquals("s22", table2.get(1, 1));
     }
+    @Test
+    public void testAddDuplicate() {
+        assertTrue(table2.add(new String[] {"b", "x", "1"}));
+        assertTrue(table2.add(new String[] {"a", "y", "2"}));
+        assertFalse(table2.add(new String[] {"b", "x", "1"}));
+        assertTrue(table2.add(new String[] {"b", "x", "2"}));
+        assertEquals(3, table2.size());
+        assertEquals("a", table2.get(1, 0));
+        assertEquals("2", table2.get(2, 2));
+    }
+
+    @Test
+    public void testAddManyDuplicates() {
+        Table table = new Table(new String[] {"k", "v"});
+        for (int i = 0; i < 1000; i += 1) {
+            assertTrue(table.add(new String[] {"" + i, "" + (i % 7)}));
+        }
+        for (int i = 999; i >= 0; i -= 1) {
+            assertFalse(table.add(new String[] {"" + i, "" + (i % 7)}));
+        }
+        assertEquals(1000, table.size());
+        assertEquals("998", table.get(998, 0));
+    }
+
+    @Test
+    public void testDictionaryColumns() {
+        Table table = new Table(new String[] {"SID", "Grade"});
+        String[] grades = {"A", "B+", "A", "C", "B+"};
+        for (int i = 0; i < grades.length; i += 1) {
+            table.add(new String[] {"10" + i, grades[i]});
+        }
+        ValueList column = table.column(1);
+        assertTrue(column.encoded());
+        assertEquals(3, column.dictionarySize());
+        assertEquals(3, table.distinctValues(1));
+        assertEquals(column.code(0), column.code(2));
+        assertEquals(column.codeOf("B+"), column.code(4));
+        assertEquals(-1, column.codeOf("F"));
+        assertEquals("C", column.valueOf(column.code(3)));
+    }
+
+    @Test
+    public void testNumericColumns() {
+        Table table = new Table(new String[] {"n", "x", "s"});
+        for (int i = 0; i < 100; i += 1) {
+            table.add(new String[] {Integer.toString(i - 50),
+                                    i + ".5", i % 2 == 0 ? "1" : "1.5"});
+        }
+        assertEquals(ValueList.Type.INT, table.column(0).type());
+        assertEquals(ValueList.Type.DOUBLE, table.column(1).type());
+        assertEquals(ValueList.Type.DOUBLE, table.column(2).type());
+        table.compact();
+        assertTrue(table.column(0) instanceof NumericList);
+        assertTrue(table.column(1) instanceof NumericList);
+        assertTrue(table.column(2).encoded());
+        table.add(new String[] {"12345678901", "1.0", "2"});
+        assertEquals(ValueList.Type.LONG, table.column(0).type());
+        assertEquals("12345678901", table.get(100, 0));
+        assertEquals("-50", table.get(0, 0));
+        table.add(new String[] {"0x", "3", "z"});
+        assertFalse(table.column(0).type().numeric());
+        assertFalse(table.column(1) instanceof NumericList);
+        assertEquals("3", table.get(101, 1));
+        assertEquals("0.5", table.get(0, 1));
+        assertEquals("12345678901", table.get(100, 0));
+    }
+
+    @Test
+    public void testPrint() {
+        Table table = new Table(new String[] {"a", "b"});
+        table.add(new String[] {"y", "2"});
+        table.add(new String[] {"x", "3"});
+        table.add(new String[] {"y", "1"});
+        StringWriter text = new StringWriter();
+        PrintWriter output = new PrintWriter(text);
+        table.print(output);
+        output.flush();
+        String nl = System.lineSeparator();
+        assertEquals("  x 3 " + nl + "  y 1 " + nl + "  y 2 " + nl,
+                     text.toString());
+    }
+
+    @Test
+    public void testMissingValues() {
+        Table table = new Table(new String[] {"a", "b"});
+        try {
+            table.add(new String[] {"x", null});
+            fail("added a row with a null value");
+        } catch (DBException e) {
+            assertEquals(0, table.size());
+        }
+
+        Database database = new Database();
+        database.put("t", table);
+        for (String insert : new String[] {
+                "insert into t values ('x');",
+                "insert into t values ('x', 'y', 'z');" }) {
+            CommandInterpreter interpreter =
+                new CommandInterpreter(new Scanner(insert), null,
+                                       new ByteArrayOutputStream(),
+                                       database);
+            try {
+                interpreter.statement();
+                fail("inserted the wrong number of values");
+            } catch (DBException e) {
+                assertEquals("wrong number of values", e.getMessage());
+            }
+        }
+        assertEquals(0, table.size());
+    }
 }
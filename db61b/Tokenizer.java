@@ -182,6 +182,18 @@ class Tokenizer {
         _k = 0;
     }
 
+    /** Return my current position in the token stream, for use with
+     *  reset. */
+    int mark() {
+        return _k;
+    }
+
+    /** Return THIS to position MARK, a value returned by mark() since the
+     *  last flush or flushToSemi operation. */
+    void reset(int mark) {
+        _k = mark;
+    }
+
     /** Set the rewind point to the current position. */
     void flush() {
         _buffer.subList(0, _k).clear();
@@ -12,7 +12,14 @@ public class UnitTest {
     public static void main(String[] ignored) {
         /* textui.runClasses(); */
         System.exit(textui.runClasses(TableTest.class,
-                DatabaseTest.class));
+                DatabaseTest.class, ConditionTest.class,
+                CSVReaderTest.class, ParallelReaderTest.class,
+                ColumnStoreTest.class, ColumnIndexTest.class,
+                BatchTest.class, ParallelScanTest.class,
+                ParallelJoinTest.class, OperatorTest.class,
+                MergeJoinTest.class, CSVWriterTest.class,
+                ProfileTest.class, PlanCacheTest.class,
+                PreparedStatementTest.class));
 
 
 
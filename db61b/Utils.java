@@ -1,7 +1,14 @@
 package db61b;
 
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.regex.Pattern;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
 /** Various utilities used by other sources.
  *  @author P. N. Hilfinger
  */
@@ -25,6 +32,17 @@ class Utils {
         return new DBException(format(s, args));
     }
 
+    /** Rename the file named TEMP to NAME, replacing any existing file
+     *  NAME, atomically if the file system permits. */
+    static void replaceFile(String temp, String name) throws IOException {
+        try {
+            Files.move(Paths.get(temp), Paths.get(name),
+                       REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(Paths.get(temp), Paths.get(name), REPLACE_EXISTING);
+        }
+    }
+
 }
 
 
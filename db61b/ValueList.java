@@ -0,0 +1,185 @@
+package db61b;
+
+import java.util.HashSet;
+
+/** The values in one column of a Table, indexed by row number.
+ *  Subclasses decide how the values are stored: on the heap, as with
+ *  DictionaryList, or elsewhere, as with the memory-mapped columns of
+ *  ColumnStore.  Rows are only ever appended.
+ *
+ *  A ValueList may be dictionary-encoded, meaning that it numbers its
+ *  distinct values 0, 1, ... and can report the number (code) of the
+ *  value in each row.  Clients may then compare codes in place of
+ *  strings, or work out the outcome of a test once per code.
+ *
+ *  Every ValueList also has a Type: the narrowest of INT, LONG, DOUBLE
+ *  and STRING that can represent all of its values exactly.  A value is
+ *  taken to be a number only if it is the canonical printed form of
+ *  that number (so "7" is an INT, but "07" and "7.0" are not), which
+ *  means that numeric columns can be stored as primitive arrays, as in
+ *  NumericList, and printed back exactly as they were read.  Conditions
+ *  compare the values of numeric columns as numbers, so that '10' > '9'
+ *  in a numeric column, although printing still orders rows as
+ *  strings.
+ *
+ *  So that select can work on batches of rows in tight loops (see
+ *  Condition.filter), values, codes, longValues, and doubleValues fetch
+ *  many rows at once.  By default they call the single-row methods for
+ *  each row; subclasses override them with loops over their arrays.
+ *  @author andrew */
+abstract class ValueList {
+
+    /** The kinds of value a column may hold, from narrowest to widest. */
+    enum Type {
+        /** Canonical decimal ints. */
+        INT,
+        /** Canonical decimal longs. */
+        LONG,
+        /** Canonical printed forms of doubles (as Double.toString).  A
+         *  DOUBLE column may also hold canonical integers. */
+        DOUBLE,
+        /** Anything. */
+        STRING;
+
+        /** Return the narrowest Type that holds VALUE exactly. */
+        static Type of(String value) {
+            if (value.isEmpty()) {
+                return STRING;
+            }
+            char c = value.charAt(0);
+            if (!(c >= '0' && c <= '9') && c != '-' && c != 'N'
+                && c != 'I') {
+                return STRING;
+            }
+            try {
+                long x = Long.parseLong(value);
+                if (!Long.toString(x).equals(value)) {
+                    return STRING;
+                }
+                return x == (int) x ? INT : LONG;
+            } catch (NumberFormatException e) {
+                /* Not an integer. */
+            }
+            try {
+                double x = Double.parseDouble(value);
+                return Double.toString(x).equals(value) ? DOUBLE : STRING;
+            } catch (NumberFormatException e) {
+                return STRING;
+            }
+        }
+
+        /** Return the narrowest Type that holds everything that either I
+         *  or OTHER does. */
+        Type widen(Type other) {
+            return compareTo(other) >= 0 ? this : other;
+        }
+
+        /** Return true iff I am a numeric type. */
+        boolean numeric() {
+            return this != STRING;
+        }
+    }
+
+    /** Return the number of values in me. */
+    abstract int size();
+
+    /** Return the value in row ROW.  Throws IndexOutOfBoundsException
+     *  unless 0 <= ROW < size(). */
+    abstract String get(int row);
+
+    /** Append VALUE to me. */
+    abstract void add(String value);
+
+    /** Return the number of distinct values in me, or an upper bound on
+     *  it that the subclass can compute cheaply.  By default, counts
+     *  them. */
+    int distinctValues() {
+        HashSet<String> values = new HashSet<>();
+        for (int row = 0; row < size(); row += 1) {
+            values.add(get(row));
+        }
+        return values.size();
+    }
+
+    /** Return the narrowest Type that holds all of my values.  By
+     *  default, STRING. */
+    Type type() {
+        return Type.STRING;
+    }
+
+    /** Return the value in row ROW as a long.  Requires that type() be
+     *  INT or LONG. */
+    long longValue(int row) {
+        return Long.parseLong(get(row));
+    }
+
+    /** Return the value in row ROW as a double.  Requires that type()
+     *  be numeric. */
+    double doubleValue(int row) {
+        return Double.parseDouble(get(row));
+    }
+
+    /** Return true iff I can hold VALUE.  Table replaces a column that
+     *  cannot with a DictionaryList.  By default, true. */
+    boolean accepts(String value) {
+        return true;
+    }
+
+    /** Return true iff I am dictionary-encoded, so that code, codeOf,
+     *  dictionarySize, and valueOf may be used.  By default, false. */
+    boolean encoded() {
+        return false;
+    }
+
+    /** Return the code of the value in row ROW.  Throws
+     *  IndexOutOfBoundsException unless 0 <= ROW < size(). */
+    int code(int row) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Return the code of VALUE, or -1 if no row holds VALUE. */
+    int codeOf(String value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Return the number of codes in use.  Codes range from 0 to
+     *  dictionarySize() - 1, and may grow as values are added. */
+    int dictionarySize() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Return the value whose code is CODE. */
+    String valueOf(int code) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Set DEST[i] to get(ROWS[i]) for 0 <= i < N, where the ROWS are
+     *  valid row numbers (as for codes, longValues, and doubleValues). */
+    void values(int[] rows, int n, String[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = get(rows[i]);
+        }
+    }
+
+    /** Set DEST[i] to code(ROWS[i]) for 0 <= i < N.  Requires that I be
+     *  encoded(). */
+    void codes(int[] rows, int n, int[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = code(rows[i]);
+        }
+    }
+
+    /** Set DEST[i] to longValue(ROWS[i]) for 0 <= i < N. */
+    void longValues(int[] rows, int n, long[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = longValue(rows[i]);
+        }
+    }
+
+    /** Set DEST[i] to doubleValue(ROWS[i]) for 0 <= i < N. */
+    void doubleValues(int[] rows, int n, double[] dest) {
+        for (int i = 0; i < n; i += 1) {
+            dest[i] = doubleValue(rows[i]);
+        }
+    }
+}